@@ -4,7 +4,10 @@ import android.os.Bundle;
 import android.support.v7.app.AppCompatActivity;
 import android.widget.TextView;
 
+import pub.androidrubick.demo.async.TestMainLooperProxy;
+import pub.androidrubick.demo.bitmap.TestBitmapCache;
 import pub.androidrubick.demo.io.TestIOOp;
+import pub.androidrubick.demo.io.TestIOOpBufferSize;
 
 public class MainActivity extends AppCompatActivity {
 
@@ -17,6 +20,9 @@ public class MainActivity extends AppCompatActivity {
         initView();
 
         TestIOOp.test();
+        TestIOOpBufferSize.test();
+        TestBitmapCache.test();
+        TestMainLooperProxy.test();
     }
 
     private void initView() {
@@ -0,0 +1,95 @@
+package pub.androidrubick.demo.async;
+
+import android.os.SystemClock;
+import android.support.annotation.NonNull;
+
+import java.util.concurrent.CountDownLatch;
+
+import androidrubick.android.async.ARSchedulers;
+import androidrubick.android.async.MainLooperDispatchers;
+import androidrubick.android.async.MainLooperProxy;
+import androidrubick.android.callback.OpCallback;
+import androidrubick.android.io.BufferType;
+import androidrubick.android.io.op.IOCallback;
+import androidrubick.base.logging.ARLogger;
+
+/**
+ * micro benchmark, {@link MainLooperDispatchers} dispatcher vs dynamic proxy,
+ * calling {@link IOCallback#onProgress} from a worker thread
+ * <p>
+ * Created by Yin Yong on 2018/1/16.
+ */
+public class TestMainLooperProxy {
+
+    private static final int CALLS = 100000;
+    private static final int ROUNDS = 5;
+
+    public static void test() {
+        ARSchedulers.newThread(new Runnable() {
+            @Override
+            public void run() {
+                for (int r = 0; r < ROUNDS; r++) {
+                    final CountDownLatch dispatcherLatch = new CountDownLatch(CALLS);
+                    IOCallback dispatcher = MainLooperProxy.wrap(new CountingCallback(dispatcherLatch));
+                    long[] dispatcherCost = measure(dispatcher, dispatcherLatch);
+
+                    // 实现了多个接口，没有对应的dispatcher，使用动态代理
+                    final CountDownLatch proxyLatch = new CountDownLatch(CALLS);
+                    IOCallback proxy = MainLooperProxy.wrap(new ProxiedCallback(proxyLatch));
+                    long[] proxyCost = measure(proxy, proxyLatch);
+
+                    ARLogger.debug("TestMainLooperProxy round " + r + ", " + CALLS + " calls, "
+                            + "dispatcher = " + dispatcherCost[0] + "ms/" + dispatcherCost[1] + "ms, "
+                            + "proxy = " + proxyCost[0] + "ms/" + proxyCost[1] + "ms (worker/total)");
+                }
+            }
+        });
+    }
+
+    /**
+     * @return cost of worker thread, and cost until all calls are delivered
+     */
+    private static long[] measure(IOCallback cb, CountDownLatch latch) {
+        long begin = SystemClock.elapsedRealtime();
+        for (int i = 0; i < CALLS; i++) {
+            cb.onProgress(8192, 8192L * i, BufferType.Byte);
+        }
+        long workerCost = SystemClock.elapsedRealtime() - begin;
+        try {
+            latch.await();
+        } catch (InterruptedException ignore) {
+        }
+        return new long[]{workerCost, SystemClock.elapsedRealtime() - begin};
+    }
+
+    private static class CountingCallback implements IOCallback {
+        final CountDownLatch mLatch;
+
+        CountingCallback(CountDownLatch latch) {
+            mLatch = latch;
+        }
+
+        @Override
+        public void onProgress(long readThisTime, long readTotal, @NonNull BufferType bt) {
+            mLatch.countDown();
+        }
+
+        @Override
+        public void onComplete(long readTotal, @NonNull BufferType bt) {
+        }
+
+        @Override
+        public void onFailed(Throwable e, long readTotal, @NonNull BufferType bt) {
+        }
+    }
+
+    private static class ProxiedCallback extends CountingCallback implements IOCallback, OpCallback {
+        ProxiedCallback(CountDownLatch latch) {
+            super(latch);
+        }
+
+        @Override
+        public void opResult(boolean success) {
+        }
+    }
+}
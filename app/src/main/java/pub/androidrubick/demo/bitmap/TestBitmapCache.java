@@ -0,0 +1,103 @@
+package pub.androidrubick.demo.bitmap;
+
+import android.graphics.Bitmap;
+import android.os.SystemClock;
+
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+
+import androidrubick.android.async.ARSchedulers;
+import androidrubick.android.bitmap.BitmapCache;
+import androidrubick.android.bitmap.ConcurrentBitmapCache;
+import androidrubick.base.logging.ARLogger;
+
+/**
+ * contention benchmark, {@link BitmapCache} behind a global lock
+ * vs {@link ConcurrentBitmapCache}
+ * <p>
+ * Created by Yin Yong on 2018/1/10.
+ */
+public class TestBitmapCache {
+
+    private static final int THREADS = 8;
+    private static final int OPS = 200000;
+    private static final int KEYS = 512;
+
+    public static void test() {
+        ARSchedulers.newThread(new Runnable() {
+            @Override
+            public void run() {
+                final Bitmap[] bms = new Bitmap[KEYS];
+                for (int i = 0; i < KEYS; i++) {
+                    bms[i] = Bitmap.createBitmap(4, 4, Bitmap.Config.ARGB_8888);
+                }
+
+                // 4x4 ARGB_8888, 64 bytes each
+                final BitmapCache locked = BitmapCache.byBytes(KEYS / 2, 64, KEYS * 64 / 2);
+                long lockedCost = measure(new Op() {
+                    @Override
+                    public void op(String key, Bitmap bm) {
+                        synchronized (locked) {
+                            if (null == locked.get(key)) {
+                                locked.put(key, bm);
+                            }
+                        }
+                    }
+                }, bms);
+
+                final ConcurrentBitmapCache concurrent = ConcurrentBitmapCache.byBytes(KEYS / 2, 64,
+                        KEYS * 64 / 2, THREADS);
+                long concurrentCost = measure(new Op() {
+                    @Override
+                    public void op(String key, Bitmap bm) {
+                        if (null == concurrent.get(key)) {
+                            concurrent.put(key, bm);
+                        }
+                    }
+                }, bms);
+
+                ARLogger.debug("TestBitmapCache " + THREADS + " threads x " + OPS + " ops, global lock = "
+                        + lockedCost + "ms, lock striped = " + concurrentCost + "ms");
+            }
+        });
+    }
+
+    private interface Op {
+        void op(String key, Bitmap bm);
+    }
+
+    private static long measure(final Op op, final Bitmap[] bms) {
+        final String[] keys = new String[KEYS];
+        for (int i = 0; i < KEYS; i++) {
+            keys[i] = "key" + i;
+        }
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch end = new CountDownLatch(THREADS);
+        for (int t = 0; t < THREADS; t++) {
+            final int seed = t;
+            new Thread() {
+                @Override
+                public void run() {
+                    Random random = new Random(seed);
+                    try {
+                        start.await();
+                        for (int i = 0; i < OPS; i++) {
+                            int k = random.nextInt(KEYS);
+                            op.op(keys[k], bms[k]);
+                        }
+                    } catch (InterruptedException ignore) {
+                    } finally {
+                        end.countDown();
+                    }
+                }
+            }.start();
+        }
+        long begin = SystemClock.elapsedRealtime();
+        start.countDown();
+        try {
+            end.await();
+        } catch (InterruptedException ignore) {
+        }
+        return SystemClock.elapsedRealtime() - begin;
+    }
+}
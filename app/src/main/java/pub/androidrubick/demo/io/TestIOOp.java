@@ -6,6 +6,7 @@ import android.support.annotation.NonNull;
 import java.io.File;
 
 import androidrubick.android.app.ARContext;
+import androidrubick.android.io.BufferPool;
 import androidrubick.android.io.BufferType;
 import androidrubick.android.io.op.IOCallback;
 import androidrubick.android.io.op.IOOp;
@@ -22,6 +23,7 @@ public class TestIOOp {
         ARLogger.debug("test0 = " + IOOp.fromContent("test").asRaw());
         ARLogger.debug("test1 = " + IOOp.from("test".getBytes()).asString());
         ARLogger.debug("test1 = " + IOOp.from(new File(ARContext.app().getCacheDir(), "yytest")).asString());
+        ARLogger.debug("buffer pool = " + BufferPool.getDefault() + ", hit rate = " + BufferPool.getDefault().hitRate());
 
         IOOp.fromContent("yytest" + SystemClock.elapsedRealtime()).async()
                 .callback(new IOCallback() {
@@ -0,0 +1,65 @@
+package pub.androidrubick.demo.io;
+
+import android.os.SystemClock;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.util.Arrays;
+import java.util.Random;
+
+import androidrubick.android.app.ARContext;
+import androidrubick.android.async.ARSchedulers;
+import androidrubick.android.io.op.IOOp;
+import androidrubick.base.logging.ARLogger;
+
+/**
+ * benchmark, fixed buffer size vs {@link IOOp#adaptiveBufferSize(boolean)},
+ * across source sizes, with known length (file) and unknown length (stream)
+ * <p>
+ * Created by Yin Yong on 2018/1/18.
+ */
+public class TestIOOpBufferSize {
+
+    private static final int[] SIZES = {64, 4 * 1024, 256 * 1024, 4 * 1024 * 1024};
+    private static final int ROUNDS = 20;
+
+    public static void test() {
+        ARSchedulers.newThread(new Runnable() {
+            @Override
+            public void run() {
+                File dir = new File(ARContext.app().getCacheDir(), "TestIOOpBufferSize");
+                dir.mkdirs();
+                byte[] data = new byte[SIZES[SIZES.length - 1]];
+                new Random(1).nextBytes(data);
+                for (int size : SIZES) {
+                    File file = new File(dir, "src" + size);
+                    IOOp.from(Arrays.copyOf(data, size)).to(file);
+                    ARLogger.debug("TestIOOpBufferSize " + size + " bytes x " + ROUNDS
+                            + ", file: fixed = " + measure(file, false, false)
+                            + "ms, adaptive = " + measure(file, true, false)
+                            + "ms; stream: fixed = " + measure(file, false, true)
+                            + "ms, adaptive = " + measure(file, true, true) + "ms");
+                }
+            }
+        });
+    }
+
+    private static long measure(File file, boolean adaptive, boolean stream) {
+        long begin = SystemClock.elapsedRealtime();
+        for (int i = 0; i < ROUNDS; i++) {
+            IOOp op;
+            if (stream) {
+                try {
+                    op = IOOp.from(new FileInputStream(file));
+                } catch (FileNotFoundException e) {
+                    return -1;
+                }
+            } else {
+                op = IOOp.from(file);
+            }
+            op.adaptiveBufferSize(adaptive).asRaw();
+        }
+        return SystemClock.elapsedRealtime() - begin;
+    }
+}
@@ -0,0 +1,157 @@
+package androidrubick.android.async;
+
+import android.support.annotation.IntRange;
+import android.support.annotation.NonNull;
+
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import androidrubick.base.logging.ARLogger;
+
+/**
+ * factory of bounded thread pools
+ * <p>
+ * Created by Yin Yong on 2018/1/12.
+ *
+ * @since 1.0.0
+ */
+public class ARExecutors {
+
+    private static final int CPU_COUNT = Runtime.getRuntime().availableProcessors();
+    private static final long KEEP_ALIVE_SECONDS = 30L;
+
+    /**
+     * @return count of available processors, at least 1
+     * @since 1.0.0
+     */
+    public static int cpuCount() {
+        return Math.max(1, CPU_COUNT);
+    }
+
+    /**
+     * create a pool with {@code nThreads} threads at most, the most recently submitted
+     * task runs first (LIFO); idle threads will be terminated.
+     *
+     * <p></p>
+     *
+     * queued tasks which are cancelled {@link java.util.concurrent.Future}s can be removed
+     * by {@link ThreadPoolExecutor#purge()}
+     *
+     * @param name     prefix of thread names
+     * @param nThreads max count of threads
+     * @since 1.0.0
+     */
+    @NonNull
+    public static ThreadPoolExecutor newLifoPool(@NonNull String name, @IntRange(from = 1) int nThreads) {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(nThreads, nThreads,
+                KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new LifoBlockingDeque(), new NamedThreadFactory(name));
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * create a pool with a bounded queue; when the queue is full, up to
+     * {@code maxThreads} threads are created; when both are full, the task is
+     * passed to {@code handler}. idle threads will be terminated.
+     *
+     * @param name          prefix of thread names
+     * @param coreThreads   count of threads kept when busy
+     * @param maxThreads    max count of threads
+     * @param queueCapacity capacity of the waiting queue
+     * @param handler       handler of rejected tasks, see {@link #fallbackToIO()}
+     * @since 1.0.0
+     */
+    @NonNull
+    public static ThreadPoolExecutor newBoundedPool(@NonNull String name,
+                                                    @IntRange(from = 1) int coreThreads,
+                                                    @IntRange(from = 1) int maxThreads,
+                                                    @IntRange(from = 1) int queueCapacity,
+                                                    @NonNull RejectedExecutionHandler handler) {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(coreThreads, Math.max(coreThreads, maxThreads),
+                KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(queueCapacity), new NamedThreadFactory(name), handler);
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * create a scheduler with a single thread, which will be terminated when idle
+     *
+     * @param name name of the thread
+     * @since 1.0.0
+     */
+    @NonNull
+    public static ScheduledThreadPoolExecutor newScheduler(@NonNull String name) {
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, new NamedThreadFactory(name));
+        executor.setKeepAliveTime(KEEP_ALIVE_SECONDS, TimeUnit.SECONDS);
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * @return a handler which runs rejected tasks on {@link ARSchedulers#io(Runnable)},
+     * so that they are neither lost nor run on the caller thread
+     * @since 1.0.0
+     */
+    @NonNull
+    public static RejectedExecutionHandler fallbackToIO() {
+        return IO_FALLBACK;
+    }
+
+    private static final RejectedExecutionHandler IO_FALLBACK = new RejectedExecutionHandler() {
+        @Override
+        public void rejectedExecution(Runnable r, ThreadPoolExecutor executor) {
+            ARLogger.warning("ARExecutors task rejected, run in io");
+            ARSchedulers.io(r);
+        }
+    };
+
+    /*package*/ static class NamedThreadFactory implements ThreadFactory {
+        private final String mName;
+        private final AtomicInteger mCount = new AtomicInteger(1);
+
+        NamedThreadFactory(String name) {
+            mName = name;
+        }
+
+        @Override
+        public Thread newThread(@NonNull Runnable r) {
+            return new Thread(r, mName + " #" + mCount.getAndIncrement());
+        }
+    }
+
+    /**
+     * takes the most recently offered element first
+     */
+    private static class LifoBlockingDeque extends LinkedBlockingDeque<Runnable> {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public boolean offer(Runnable r) {
+            return super.offerFirst(r);
+        }
+
+        @Override
+        public boolean offer(Runnable r, long timeout, TimeUnit unit) throws InterruptedException {
+            return super.offerFirst(r, timeout, unit);
+        }
+
+        @Override
+        public void put(Runnable r) throws InterruptedException {
+            super.putFirst(r);
+        }
+
+        @Override
+        public boolean add(Runnable r) {
+            super.addFirst(r);
+            return true;
+        }
+    }
+}
@@ -6,7 +6,9 @@ import android.os.Handler;
 import android.os.Looper;
 import android.os.Message;
 import android.os.Process;
+import android.os.SystemClock;
 import android.support.annotation.MainThread;
+import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 import android.support.annotation.WorkerThread;
 import android.util.Log;
@@ -19,6 +21,7 @@ import java.util.concurrent.FutureTask;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * add method {@link #execute()} with no parameters
@@ -50,14 +53,80 @@ public abstract class AsyncOp<Params, Progress, Result> {
         FINISHED,
     }
 
+    private static final int CPU_COUNT = ARExecutors.cpuCount();
+    /**
+     * core pool size of {@link #getDefaultExecutor()}
+     *
+     * @since 1.0.0
+     */
+    public static final int DEF_CORE_POOL_SIZE = Math.max(2, Math.min(CPU_COUNT - 1, 4));
+    /**
+     * max pool size of {@link #getDefaultExecutor()}
+     *
+     * @since 1.0.0
+     */
+    public static final int DEF_MAX_POOL_SIZE = CPU_COUNT * 2 + 1;
+    /**
+     * queue capacity of {@link #getDefaultExecutor()}
+     *
+     * @since 1.0.0
+     */
+    public static final int DEF_QUEUE_CAPACITY = 128;
+
+    private static volatile Executor sDefaultExecutor;
+
+    /**
+     * @return executor used by {@link #execute(Object[])}; default is a bounded pool,
+     * see {@link #DEF_CORE_POOL_SIZE}, {@link #DEF_MAX_POOL_SIZE} and {@link #DEF_QUEUE_CAPACITY},
+     * rejected tasks are run by {@link ARExecutors#fallbackToIO()}
+     * @since 1.0.0
+     */
+    public static Executor getDefaultExecutor() {
+        if (null == sDefaultExecutor) {
+            synchronized (AsyncOp.class) {
+                if (null == sDefaultExecutor) {
+                    sDefaultExecutor = ARExecutors.newBoundedPool(LOG_TAG, DEF_CORE_POOL_SIZE,
+                            DEF_MAX_POOL_SIZE, DEF_QUEUE_CAPACITY, ARExecutors.fallbackToIO());
+                }
+            }
+        }
+        return sDefaultExecutor;
+    }
+
+    /**
+     * set executor used by {@link #execute(Object[])}, for example, a pool created by
+     * {@link ARExecutors#newBoundedPool} with another queue capacity or rejection policy
+     *
+     * @since 1.0.0
+     */
+    public static void setDefaultExecutor(@NonNull Executor exec) {
+        synchronized (AsyncOp.class) {
+            sDefaultExecutor = exec;
+        }
+    }
+
     private static final int MESSAGE_POST_RESULT = 0x1;
     private static final int MESSAGE_POST_PROGRESS = 0x2;
+    private static final Object[] NO_PROGRESS = new Object[0];
 
     private final WorkerRunnable<Params, Result> mWorker;
     private final FutureTask<Result> mFuture;
     private Status mStatus = Status.PENDING;
     private final AtomicBoolean mCancelled = new AtomicBoolean();
     private final AtomicBoolean mTaskInvoked = new AtomicBoolean();
+    // 最新的、尚未分发的进度；不为null时，表示已有进度消息在队列中
+    private final AtomicReference<Object[]> mPendingProgress = new AtomicReference<>();
+    private volatile long mProgressInterval;
+    private final CancelToken mCancelToken = new CancelToken();
+    private final Runnable mTimeoutRunnable = new Runnable() {
+        @Override
+        public void run() {
+            if (mStatus != Status.FINISHED) {
+                cancel(true);
+            }
+        }
+    };
+    private volatile long mLastProgressTime;
 
     private final Handler mHandler;
     /**
@@ -90,6 +159,10 @@ public abstract class AsyncOp<Params, Progress, Result> {
                     //noinspection unchecked
                     result = doInBackground(mParams);
                     Binder.flushPendingCommands();
+                } catch (CancellationException e) {
+                    // stopped by cancelToken()
+                    mCancelled.set(true);
+                    mCancelToken.cancel();
                 } catch (Throwable tr) {
                     mCancelled.set(true);
                     throw tr;
@@ -189,16 +262,31 @@ public abstract class AsyncOp<Params, Progress, Result> {
 
     /**
      * Runs on the UI thread after {@link #publishProgress} is invoked.
-     * The specified values are the values passed to {@link #publishProgress}.
+     * The specified values are the latest values passed to {@link #publishProgress};
+     * values published before them but not delivered yet are dropped.
      *
      * @param values The values indicating progress.
      * @see #publishProgress
      * @see #doInBackground
+     * @see #setProgressInterval(long)
      */
     @SafeVarargs
-    @SuppressWarnings({"UnusedDeclaration"})
     @MainThread
     protected final void onProgressUpdate(Progress... values) {
+        onProgressChanged(values);
+    }
+
+    /**
+     * Runs on the UI thread after {@link #publishProgress} is invoked, override it
+     * to show the progress; see {@link #onProgressUpdate}.
+     *
+     * @param values The latest values passed to {@link #publishProgress}.
+     * @see #setProgressInterval(long)
+     * @since 1.0.0
+     */
+    @SuppressWarnings({"UnusedDeclaration"})
+    @MainThread
+    protected void onProgressChanged(Progress[] values) {
     }
 
     /**
@@ -278,9 +366,40 @@ public abstract class AsyncOp<Params, Progress, Result> {
      */
     public final boolean cancel(boolean mayInterruptIfRunning) {
         mCancelled.set(true);
+        mCancelToken.cancel();
         return mFuture.cancel(mayInterruptIfRunning);
     }
 
+    /**
+     * token cancelled along with this task, pass it to the work done in
+     * {@link #doInBackground(Object[])}, such as IO and bitmap decoding,
+     * so that the work stops as soon as the task is cancelled or timed out.
+     *
+     * <p></p>
+     *
+     * if {@link #doInBackground(Object[])} throws {@link CancellationException},
+     * by {@link CancelToken#throwIfCancelled()} for example, the task is regarded as cancelled.
+     *
+     * @since 1.0.0
+     */
+    public final CancelToken cancelToken() {
+        return mCancelToken;
+    }
+
+    /**
+     * cancel the task, if it is not finished after {@code timeout} from now;
+     * can be called after executed, e.g. {@code exeInIO().timeout(...)}
+     *
+     * @since 1.0.0
+     */
+    public final AsyncOp<Params, Progress, Result> timeout(long timeout, TimeUnit unit) {
+        mCancelToken.deadlineAfter(timeout, unit);
+        Handler handler = getHandler();
+        handler.removeCallbacks(mTimeoutRunnable);
+        handler.postDelayed(mTimeoutRunnable, Math.max(0, unit.toMillis(timeout)));
+        return this;
+    }
+
     /**
      * Waits if necessary for the computation to complete, and then
      * retrieves its result.
@@ -317,16 +436,10 @@ public abstract class AsyncOp<Params, Progress, Result> {
      * Executes the task with the specified parameters. The task returns
      * itself (this) so that the caller can keep a reference to it.
      * <p>
-     * <p>Note: this function schedules the task on a queue for a single background
-     * thread or pool of threads depending on the platform version.  When first
-     * introduced, AsyncTasks were executed serially on a single background thread.
-     * Starting with {@link android.os.Build.VERSION_CODES#DONUT}, this was changed
-     * to a pool of threads allowing multiple tasks to operate in parallel. Starting
-     * {@link android.os.Build.VERSION_CODES#HONEYCOMB}, tasks are back to being
-     * executed on a single thread to avoid common application errors caused
-     * by parallel execution.  If you truly want parallel execution, you can use
-     * the {@link #executeOnExecutor} version of this method;
-     * however, see commentary there for warnings on its use.
+     * <p>Note: this function schedules the task on {@link #getDefaultExecutor()},
+     * a bounded pool of threads shared by all tasks, so tasks may run in parallel.
+     * To use another executor, use the {@link #executeOnExecutor} version of this
+     * method, or {@link #setDefaultExecutor(Executor)}.
      * <p>
      * <p>This method must be invoked on the UI thread.
      *
@@ -339,7 +452,7 @@ public abstract class AsyncOp<Params, Progress, Result> {
     @SafeVarargs
     @MainThread
     public final AsyncOp<Params, Progress, Result> execute(Params... params) {
-        return exeInNewThread((Params) null);
+        return executeOnExecutor(getDefaultExecutor(), params);
     }
 
     /**
@@ -446,11 +559,27 @@ public abstract class AsyncOp<Params, Progress, Result> {
         mWorker.mParams = params;
     }
 
+    /**
+     * min interval between two {@link #onProgressUpdate} calls; default is 0,
+     * progress is delivered as soon as the UI thread is free
+     *
+     * @param intervalMillis milliseconds, >= 0
+     * @since 1.0.0
+     */
+    public final AsyncOp<Params, Progress, Result> setProgressInterval(long intervalMillis) {
+        mProgressInterval = Math.max(0, intervalMillis);
+        return this;
+    }
+
     /**
      * This method can be invoked from {@link #doInBackground} to
      * publish updates on the UI thread while the background computation is
-     * still running. Each call to this method will trigger the execution of
-     * {@link #onProgressUpdate} on the UI thread.
+     * still running.
+     * <p>
+     * Progress is coalesced: at most one progress message per task is pending
+     * on the UI thread, the latest values overwrite the earlier ones not delivered yet,
+     * and {@link #onProgressUpdate} is called at most once per
+     * {@link #setProgressInterval(long) interval}.
      * <p>
      * {@link #onProgressUpdate} will not be called if the task has been
      * canceled.
@@ -462,13 +591,32 @@ public abstract class AsyncOp<Params, Progress, Result> {
     @SafeVarargs
     @WorkerThread
     protected final void publishProgress(Progress... values) {
-        if (!isCancelled()) {
-            getHandler().obtainMessage(MESSAGE_POST_PROGRESS,
-                    new AsyncTaskResult<Progress>(this, values)).sendToTarget();
+        if (isCancelled()) {
+            return;
+        }
+        if (null != mPendingProgress.getAndSet(null == values ? NO_PROGRESS : values)) {
+            // 已有进度消息在队列中，它将分发最新的值
+            return;
+        }
+        long when = Math.max(SystemClock.uptimeMillis(), mLastProgressTime + mProgressInterval);
+        Handler handler = getHandler();
+        handler.sendMessageAtTime(handler.obtainMessage(MESSAGE_POST_PROGRESS, this), when);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void deliverProgress() {
+        Object[] values = mPendingProgress.getAndSet(null);
+        mLastProgressTime = SystemClock.uptimeMillis();
+        if (null != values && !isCancelled() && mStatus != Status.FINISHED) {
+            onProgressUpdate((Progress[]) values);
         }
     }
 
     private void finish(Result result) {
+        getHandler().removeCallbacks(mTimeoutRunnable);
+        // 结果之前，分发尚未分发的进度
+        getHandler().removeMessages(MESSAGE_POST_PROGRESS, this);
+        deliverProgress();
         if (isCancelled()) {
             onCancelled(result);
         } else {
@@ -485,14 +633,14 @@ public abstract class AsyncOp<Params, Progress, Result> {
         @SuppressWarnings({"unchecked", "RawUseOfParameterizedType"})
         @Override
         public void handleMessage(Message msg) {
-            AsyncTaskResult<?> result = (AsyncTaskResult<?>) msg.obj;
             switch (msg.what) {
                 case MESSAGE_POST_RESULT:
+                    AsyncTaskResult<?> result = (AsyncTaskResult<?>) msg.obj;
                     // There is only one result
                     result.mTask.finish(result.mData[0]);
                     break;
                 case MESSAGE_POST_PROGRESS:
-                    result.mTask.onProgressUpdate(result.mData);
+                    ((AsyncOp<?, ?, ?>) msg.obj).deliverProgress();
                     break;
             }
         }
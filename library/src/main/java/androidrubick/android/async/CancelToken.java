@@ -0,0 +1,127 @@
+package androidrubick.android.async;
+
+import android.os.SystemClock;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * cancellation signal passed into background work, such as
+ * {@link AsyncOp#doInBackground(Object[])}, IO copy loops and bitmap decoding;
+ * long-running work should check it periodically, and stop as early as possible
+ * when it is cancelled.
+ *
+ * <p></p>
+ *
+ * a token can have a deadline, after which it is regarded as cancelled.
+ *
+ * <p>
+ * Created by Yin Yong on 2018/1/15.
+ *
+ * @since 1.0.0
+ */
+public class CancelToken {
+
+    private volatile boolean mCancelled;
+    private volatile long mDeadline = Long.MAX_VALUE;
+    private final List<Runnable> mListeners = new ArrayList<>(1);
+
+    /**
+     * @return whether the token is not null and is cancelled
+     * @since 1.0.0
+     */
+    public static boolean isCancelled(@Nullable CancelToken token) {
+        return null != token && token.isCancelled();
+    }
+
+    /**
+     * @throws CancellationException if the token is not null and is cancelled
+     * @since 1.0.0
+     */
+    public static void throwIfCancelled(@Nullable CancelToken token) {
+        if (null != token) {
+            token.throwIfCancelled();
+        }
+    }
+
+    /**
+     * @return whether {@link #cancel()} is called, or the deadline is reached
+     * @since 1.0.0
+     */
+    public boolean isCancelled() {
+        if (!mCancelled && SystemClock.elapsedRealtime() >= mDeadline) {
+            cancel();
+        }
+        return mCancelled;
+    }
+
+    /**
+     * @throws CancellationException if cancelled
+     * @since 1.0.0
+     */
+    public void throwIfCancelled() {
+        if (isCancelled()) {
+            throw new CancellationException("cancelled");
+        }
+    }
+
+    /**
+     * cancel the token, and notify the listeners; only the first call takes effect
+     *
+     * @since 1.0.0
+     */
+    public void cancel() {
+        Runnable[] listeners;
+        synchronized (mListeners) {
+            if (mCancelled) {
+                return;
+            }
+            mCancelled = true;
+            listeners = mListeners.toArray(new Runnable[mListeners.size()]);
+            mListeners.clear();
+        }
+        for (Runnable listener : listeners) {
+            listener.run();
+        }
+    }
+
+    /**
+     * the token will be regarded as cancelled after {@code timeout};
+     * note that listeners are notified only when the expiration is found by
+     * {@link #isCancelled()}
+     *
+     * @since 1.0.0
+     */
+    public CancelToken deadlineAfter(long timeout, @NonNull TimeUnit unit) {
+        mDeadline = SystemClock.elapsedRealtime() + Math.max(0, unit.toMillis(timeout));
+        return this;
+    }
+
+    /**
+     * @param listener run on the thread calling {@link #cancel()};
+     *                 if already cancelled, run immediately
+     * @since 1.0.0
+     */
+    public void addOnCancelListener(@NonNull Runnable listener) {
+        synchronized (mListeners) {
+            if (!mCancelled) {
+                mListeners.add(listener);
+                return;
+            }
+        }
+        listener.run();
+    }
+
+    /**
+     * @since 1.0.0
+     */
+    public void removeOnCancelListener(@NonNull Runnable listener) {
+        synchronized (mListeners) {
+            mListeners.remove(listener);
+        }
+    }
+}
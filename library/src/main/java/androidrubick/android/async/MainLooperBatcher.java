@@ -0,0 +1,83 @@
+package androidrubick.android.async;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Message;
+import android.support.annotation.NonNull;
+import android.view.Choreographer;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * queue of calls from other threads, drained in a single main-looper message,
+ * or once per frame by {@link Choreographer};
+ *
+ * shared by {@link MainLooperProxy#wrapBatched(Object, boolean, String...)} and
+ * the batched dispatchers of {@link MainLooperDispatchers}.
+ *
+ * <p>
+ * Created by Yin Yong on 2018/1/16.
+ *
+ * @since 1.0.0
+ */
+/*package*/ class MainLooperBatcher implements Handler.Callback, Choreographer.FrameCallback {
+
+    private final Handler mHandler = new Handler(Looper.getMainLooper(), this);
+    private final boolean mFrameAligned;
+    private final ConcurrentLinkedQueue<Runnable> mQueue = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean mScheduled = new AtomicBoolean();
+
+    /**
+     * @param frameAligned if true, drain once per frame, since {@link Build.VERSION_CODES#JELLY_BEAN}
+     */
+    MainLooperBatcher(boolean frameAligned) {
+        mFrameAligned = frameAligned && Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN;
+    }
+
+    /**
+     * queue the call, and schedule a drain if not scheduled yet
+     */
+    void enqueue(@NonNull Runnable call) {
+        mQueue.offer(call);
+        if (mScheduled.compareAndSet(false, true)) {
+            mHandler.sendEmptyMessage(0);
+        }
+    }
+
+    /**
+     * run queued calls in main looper; called before a direct call in main looper
+     * to keep the order
+     */
+    void drain() {
+        mScheduled.set(false);
+        try {
+            Runnable call;
+            while (null != (call = mQueue.poll())) {
+                call.run();
+            }
+        } finally {
+            if (!mQueue.isEmpty() && mScheduled.compareAndSet(false, true)) {
+                mHandler.sendEmptyMessage(0);
+            }
+        }
+    }
+
+    @Override
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    public boolean handleMessage(Message msg) {
+        if (mFrameAligned) {
+            Choreographer.getInstance().postFrameCallback(this);
+        } else {
+            drain();
+        }
+        return true;
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        drain();
+    }
+}
@@ -0,0 +1,389 @@
+package androidrubick.android.async;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.io.File;
+import java.util.concurrent.ConcurrentHashMap;
+
+import androidrubick.android.callback.OpCallback;
+import androidrubick.android.callback.OpPCallback;
+import androidrubick.android.io.BufferType;
+import androidrubick.android.io.FileIOCallback;
+import androidrubick.android.io.op.IOCallback;
+
+/**
+ * registry of hand-written dispatchers used by {@link MainLooperProxy#wrap(Object)};
+ *
+ * a dispatcher implements the interface directly, and forwards invocations to
+ * the main looper by {@link Handler#post(Runnable)}, so there is no reflection,
+ * no boxing and no arguments array. if there is no dispatcher registered for the
+ * interface, {@link MainLooperProxy} falls back to {@link java.lang.reflect.Proxy}.
+ *
+ * <p></p>
+ *
+ * dispatchers of {@link IOCallback}, {@link FileIOCallback}, {@link OpCallback}
+ * and {@link OpPCallback} are registered by default.
+ *
+ * <p>
+ * Created by Yin Yong on 2018/1/16.
+ *
+ * @since 1.0.0
+ */
+public class MainLooperDispatchers {
+
+    /**
+     * create dispatcher of an interface
+     *
+     * @param <T> interface type
+     * @since 1.0.0
+     */
+    public interface Factory<T> {
+        /**
+         * @param raw raw object
+         * @return dispatcher forwarding invocations to {@code raw} in main looper,
+         * should extend {@link Dispatcher}
+         * @since 1.0.0
+         */
+        @NonNull
+        T create(@NonNull T raw);
+    }
+
+    /**
+     * base class of dispatchers
+     *
+     * @param <T> interface type
+     * @since 1.0.0
+     */
+    public static abstract class Dispatcher<T> {
+        /**
+         * @since 1.0.0
+         */
+        protected final T mRaw;
+
+        /**
+         * @since 1.0.0
+         */
+        protected Dispatcher(@NonNull T raw) {
+            mRaw = raw;
+        }
+
+        /**
+         * @return whether current thread is main thread
+         * @since 1.0.0
+         */
+        protected static boolean isMainLooper() {
+            return Looper.myLooper() == Looper.getMainLooper();
+        }
+
+        /**
+         * post task to main looper
+         *
+         * @since 1.0.0
+         */
+        protected static void post(@NonNull Runnable r) {
+            MAIN.post(r);
+        }
+    }
+
+    private static final Handler MAIN = new Handler(Looper.getMainLooper());
+    private static final ConcurrentHashMap<Class<?>, Factory<?>> sFactories = new ConcurrentHashMap<>();
+
+    static {
+        register(IOCallback.class, new Factory<IOCallback>() {
+            @NonNull
+            @Override
+            public IOCallback create(@NonNull IOCallback raw) {
+                return new IOCallbackDispatcher(raw);
+            }
+        });
+        register(FileIOCallback.class, new Factory<FileIOCallback>() {
+            @NonNull
+            @Override
+            public FileIOCallback create(@NonNull FileIOCallback raw) {
+                return new FileIOCallbackDispatcher(raw);
+            }
+        });
+        register(OpCallback.class, new Factory<OpCallback>() {
+            @NonNull
+            @Override
+            public OpCallback create(@NonNull OpCallback raw) {
+                return new OpCallbackDispatcher(raw);
+            }
+        });
+        register(MainLooperDispatchers.<OpPCallback<Object>>typed(OpPCallback.class), new Factory<OpPCallback<Object>>() {
+            @NonNull
+            @Override
+            public OpPCallback<Object> create(@NonNull OpPCallback<Object> raw) {
+                return new OpPCallbackDispatcher<>(raw);
+            }
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> Class<T> typed(Class<? super T> itf) {
+        // 泛型接口的Class只有原始类型
+        return (Class<T>) itf;
+    }
+
+    /**
+     * register dispatcher factory of the interface, replace the old one if exists
+     *
+     * @since 1.0.0
+     */
+    public static <T> void register(@NonNull Class<T> itf, @NonNull Factory<T> factory) {
+        sFactories.put(itf, factory);
+    }
+
+    /**
+     * @since 1.0.0
+     */
+    public static void unregister(@NonNull Class<?> itf) {
+        sFactories.remove(itf);
+    }
+
+    /**
+     * @return dispatcher of {@code raw}, or null if no dispatcher registered for the interface
+     */
+    @Nullable
+    @SuppressWarnings("unchecked")
+    /*package*/ static Object create(@NonNull Class<?> itf, @NonNull Object raw) {
+        Factory<Object> factory = (Factory<Object>) sFactories.get(itf);
+        return null == factory ? null : factory.create(raw);
+    }
+
+    /**
+     * @return batched dispatcher of {@code raw}, or null if there is no batched dispatcher
+     * for the interface, only {@link IOCallback} has one
+     * @see MainLooperProxy#wrapBatched(Object, boolean, String...)
+     */
+    @Nullable
+    /*package*/ static Object createBatched(@NonNull Class<?> itf, @NonNull Object raw,
+                                          @NonNull MainLooperBatcher batcher, String[] collapsible) {
+        if (itf == IOCallback.class) {
+            return new BatchedIOCallbackDispatcher((IOCallback) raw, batcher,
+                    MainLooperProxy.contains(collapsible, "onProgress"));
+        }
+        return null;
+    }
+
+    private static class IOCallbackDispatcher extends Dispatcher<IOCallback> implements IOCallback {
+        IOCallbackDispatcher(IOCallback raw) {
+            super(raw);
+        }
+
+        @Override
+        public void onProgress(final long readThisTime, final long readTotal, @NonNull final BufferType bt) {
+            if (isMainLooper()) {
+                mRaw.onProgress(readThisTime, readTotal, bt);
+                return;
+            }
+            post(new Runnable() {
+                @Override
+                public void run() {
+                    mRaw.onProgress(readThisTime, readTotal, bt);
+                }
+            });
+        }
+
+        @Override
+        public void onComplete(final long readTotal, @NonNull final BufferType bt) {
+            if (isMainLooper()) {
+                mRaw.onComplete(readTotal, bt);
+                return;
+            }
+            post(new Runnable() {
+                @Override
+                public void run() {
+                    mRaw.onComplete(readTotal, bt);
+                }
+            });
+        }
+
+        @Override
+        public void onFailed(final Throwable e, final long readTotal, @NonNull final BufferType bt) {
+            if (isMainLooper()) {
+                mRaw.onFailed(e, readTotal, bt);
+                return;
+            }
+            post(new Runnable() {
+                @Override
+                public void run() {
+                    mRaw.onFailed(e, readTotal, bt);
+                }
+            });
+        }
+    }
+
+    private static class BatchedIOCallbackDispatcher extends Dispatcher<IOCallback> implements IOCallback {
+        private final MainLooperBatcher mBatcher;
+        private final boolean mCollapseProgress;
+        // 合并中的进度，guarded by mProgress
+        private boolean mProgressQueued;
+        private long mReadThisTime;
+        private long mReadTotal;
+        private BufferType mBufferType;
+        private final Runnable mProgress = new Runnable() {
+            @Override
+            public void run() {
+                final long readThisTime;
+                final long readTotal;
+                final BufferType bt;
+                synchronized (this) {
+                    if (!mProgressQueued) {
+                        return;
+                    }
+                    mProgressQueued = false;
+                    readThisTime = mReadThisTime;
+                    readTotal = mReadTotal;
+                    bt = mBufferType;
+                    mReadThisTime = 0;
+                }
+                mRaw.onProgress(readThisTime, readTotal, bt);
+            }
+        };
+
+        BatchedIOCallbackDispatcher(IOCallback raw, MainLooperBatcher batcher, boolean collapseProgress) {
+            super(raw);
+            mBatcher = batcher;
+            mCollapseProgress = collapseProgress;
+        }
+
+        @Override
+        public void onProgress(final long readThisTime, final long readTotal, @NonNull final BufferType bt) {
+            if (isMainLooper()) {
+                // 保证顺序，先分发队列中的调用
+                mBatcher.drain();
+                mRaw.onProgress(readThisTime, readTotal, bt);
+                return;
+            }
+            if (!mCollapseProgress) {
+                mBatcher.enqueue(new Runnable() {
+                    @Override
+                    public void run() {
+                        mRaw.onProgress(readThisTime, readTotal, bt);
+                    }
+                });
+                return;
+            }
+            final boolean queue;
+            synchronized (mProgress) {
+                mReadThisTime += readThisTime;
+                mReadTotal = readTotal;
+                mBufferType = bt;
+                queue = !mProgressQueued;
+                mProgressQueued = true;
+            }
+            if (queue) {
+                mBatcher.enqueue(mProgress);
+            }
+        }
+
+        @Override
+        public void onComplete(final long readTotal, @NonNull final BufferType bt) {
+            if (isMainLooper()) {
+                mBatcher.drain();
+                mRaw.onComplete(readTotal, bt);
+                return;
+            }
+            mBatcher.enqueue(new Runnable() {
+                @Override
+                public void run() {
+                    mRaw.onComplete(readTotal, bt);
+                }
+            });
+        }
+
+        @Override
+        public void onFailed(final Throwable e, final long readTotal, @NonNull final BufferType bt) {
+            if (isMainLooper()) {
+                mBatcher.drain();
+                mRaw.onFailed(e, readTotal, bt);
+                return;
+            }
+            mBatcher.enqueue(new Runnable() {
+                @Override
+                public void run() {
+                    mRaw.onFailed(e, readTotal, bt);
+                }
+            });
+        }
+    }
+
+    private static class FileIOCallbackDispatcher extends Dispatcher<FileIOCallback> implements FileIOCallback {
+        FileIOCallbackDispatcher(FileIOCallback raw) {
+            super(raw);
+        }
+
+        @Override
+        public void onProgress(final File file, final boolean success) {
+            if (isMainLooper()) {
+                mRaw.onProgress(file, success);
+                return;
+            }
+            post(new Runnable() {
+                @Override
+                public void run() {
+                    mRaw.onProgress(file, success);
+                }
+            });
+        }
+
+        @Override
+        public void onComplete() {
+            if (isMainLooper()) {
+                mRaw.onComplete();
+                return;
+            }
+            post(new Runnable() {
+                @Override
+                public void run() {
+                    mRaw.onComplete();
+                }
+            });
+        }
+    }
+
+    private static class OpCallbackDispatcher extends Dispatcher<OpCallback> implements OpCallback {
+        OpCallbackDispatcher(OpCallback raw) {
+            super(raw);
+        }
+
+        @Override
+        public void opResult(final boolean success) {
+            if (isMainLooper()) {
+                mRaw.opResult(success);
+                return;
+            }
+            post(new Runnable() {
+                @Override
+                public void run() {
+                    mRaw.opResult(success);
+                }
+            });
+        }
+    }
+
+    private static class OpPCallbackDispatcher<Result> extends Dispatcher<OpPCallback<Result>>
+            implements OpPCallback<Result> {
+        OpPCallbackDispatcher(OpPCallback<Result> raw) {
+            super(raw);
+        }
+
+        @Override
+        public void opResult(final boolean success, final Result result) {
+            if (isMainLooper()) {
+                mRaw.opResult(success, result);
+                return;
+            }
+            post(new Runnable() {
+                @Override
+                public void run() {
+                    mRaw.opResult(success, result);
+                }
+            });
+        }
+    }
+}
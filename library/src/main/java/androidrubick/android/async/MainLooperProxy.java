@@ -1,13 +1,15 @@
 package androidrubick.android.async;
 
+import android.os.Build;
 import android.os.Handler;
 import android.os.Looper;
 import android.os.Message;
+import android.view.Choreographer;
 
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
 
 import androidrubick.base.utils.Exceptions;
 import androidrubick.base.utils.Primitives;
@@ -29,6 +31,9 @@ import static java.lang.reflect.Proxy.newProxyInstance;
 public class MainLooperProxy {
 
     /**
+     * if {@code raw} implements a single interface, which has a dispatcher registered in
+     * {@link MainLooperDispatchers}, the dispatcher is used; otherwise, a dynamic proxy is used.
+     *
      * @param raw  raw object, holding interface(s)
      * @param <TS> super interface(s) to async proxy
      * @param <T>  class type of raw object
@@ -40,9 +45,65 @@ public class MainLooperProxy {
             return null;
         }
         Class[] superInterfaces = raw.getClass().getInterfaces();
+        if (superInterfaces.length == 1) {
+            Object dispatcher = MainLooperDispatchers.create(superInterfaces[0], raw);
+            if (null != dispatcher) {
+                return (TS) dispatcher;
+            }
+        }
         return (TS) newProxyInstance(raw.getClass().getClassLoader(), superInterfaces, new MainLooperWrapper(raw));
     }
 
+    /**
+     * same as {@link #wrap(Object)}, but invocations from other threads are queued,
+     * and dispatched in a single main-looper message;
+     *
+     * repeated calls to methods named in {@code collapsible}, such as progress callbacks,
+     * are collapsed while waiting: only the latest arguments are dispatched,
+     * at the position of the first pending call.
+     *
+     * <p></p>
+     *
+     * if {@code raw} implements {@link androidrubick.android.io.op.IOCallback} only,
+     * a hand-written dispatcher is used instead of a dynamic proxy; it sums up
+     * {@code readThisTime} of the collapsed {@code onProgress} calls.
+     *
+     * @param raw          raw object, holding interface(s)
+     * @param frameAligned if true, dispatch once per frame by {@link Choreographer},
+     *                     since {@link Build.VERSION_CODES#JELLY_BEAN}
+     * @param collapsible  names of void methods whose calls can be collapsed
+     * @param <TS>         super interface(s) to async proxy
+     * @param <T>          class type of raw object
+     * @since 1.0.0
+     */
+    @SuppressWarnings("unchecked")
+    public static <TS, T extends TS> TS wrapBatched(T raw, boolean frameAligned, String... collapsible) {
+        if (null == raw) {
+            return null;
+        }
+        MainLooperBatcher batcher = new MainLooperBatcher(frameAligned);
+        Class[] superInterfaces = raw.getClass().getInterfaces();
+        if (superInterfaces.length == 1) {
+            Object dispatcher = MainLooperDispatchers.createBatched(superInterfaces[0], raw, batcher, collapsible);
+            if (null != dispatcher) {
+                return (TS) dispatcher;
+            }
+        }
+        return (TS) newProxyInstance(raw.getClass().getClassLoader(), superInterfaces,
+                new BatchingWrapper(raw, batcher, collapsible));
+    }
+
+    /*package*/ static boolean contains(String[] names, String name) {
+        if (null != names) {
+            for (String n : names) {
+                if (name.equals(n)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
     /**
      * check target object whether is an main-looper proxy or not
      *
@@ -51,7 +112,26 @@ public class MainLooperProxy {
      * @since 1.0.0
      */
     public static boolean isProxy(Object o) {
-        return null != o && isProxyClass(o.getClass()) && getInvocationHandler(o) instanceof MainLooperWrapper;
+        if (o instanceof MainLooperDispatchers.Dispatcher) {
+            return true;
+        }
+        if (null == o || !isProxyClass(o.getClass())) {
+            return false;
+        }
+        InvocationHandler handler = getInvocationHandler(o);
+        return handler instanceof MainLooperWrapper || handler instanceof BatchingWrapper;
+    }
+
+    private static boolean isMainLooper() {
+        return Looper.myLooper() == Looper.getMainLooper();
+    }
+
+    private static Object invokeRaw(Object raw, Method method, Object[] args) {
+        try {
+            return method.invoke(raw, args);
+        } catch (Throwable e) {
+            throw Exceptions.asRuntime(e);
+        }
     }
 
     private static class MainLooperWrapper implements Handler.Callback, InvocationHandler {
@@ -64,40 +144,100 @@ public class MainLooperProxy {
 
         @Override
         public boolean handleMessage(Message msg) {
-            try {
-                Method method;
-                Object args[] = null;
-                if (msg.obj instanceof Method) {
-                    method = (Method) msg.obj;
-                } else {
-                    Map<String, Object> data = (Map<String, Object>) msg.obj;
-                    method = (Method) data.get("method");
-                    args = (Object[]) data.get("args");
-                }
-                method.invoke(mRaw, args);
-            } catch (Throwable e) {
-                throw Exceptions.asRuntime(e);
-            }
+            ((Call) msg.obj).run();
             return true;
         }
 
         @Override
         public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
-            if (Looper.myLooper() == Looper.getMainLooper()) {
+            if (isMainLooper()) {
                 return method.invoke(mRaw, args);
             } else {
-                Message msg = mHandler.obtainMessage(0);
-                if (null != args && args.length > 0) {
-                    Map<String, Object> data = new HashMap<>();
-                    data.put("method", method);
-                    data.put("args", args);
-                    msg.obj = data;
-                } else {
-                    msg.obj = method;
-                }
-                msg.sendToTarget();
+                mHandler.obtainMessage(0, new Call(mRaw, method, args)).sendToTarget();
                 return Primitives.defValueOf(method.getReturnType());
             }
         }
     }
+
+    private static class BatchingWrapper implements InvocationHandler {
+        private static final Object[] NO_ARGS = new Object[0];
+        private static final String[] NO_NAMES = new String[0];
+
+        private final Object mRaw;
+        private final MainLooperBatcher mBatcher;
+        private final String[] mCollapsible;
+        private final ConcurrentHashMap<Method, CollapsedCall> mCollapsed = new ConcurrentHashMap<>();
+
+        BatchingWrapper(Object raw, MainLooperBatcher batcher, String[] collapsible) {
+            mRaw = raw;
+            mBatcher = batcher;
+            mCollapsible = null == collapsible ? NO_NAMES : collapsible;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if (method.getDeclaringClass() == Object.class) {
+                return method.invoke(mRaw, args);
+            }
+            if (isMainLooper()) {
+                // 保证顺序，先分发队列中的调用
+                mBatcher.drain();
+                return method.invoke(mRaw, args);
+            }
+            if (isCollapsible(method)) {
+                CollapsedCall call = mCollapsed.get(method);
+                if (null == call) {
+                    CollapsedCall newCall = new CollapsedCall(mRaw, method);
+                    call = mCollapsed.putIfAbsent(method, newCall);
+                    if (null == call) {
+                        call = newCall;
+                    }
+                }
+                if (null == call.mLatestArgs.getAndSet(null == args ? NO_ARGS : args)) {
+                    // 尚未在队列中
+                    mBatcher.enqueue(call);
+                }
+            } else {
+                mBatcher.enqueue(new Call(mRaw, method, args));
+            }
+            return Primitives.defValueOf(method.getReturnType());
+        }
+
+        private boolean isCollapsible(Method method) {
+            return method.getReturnType() == void.class && contains(mCollapsible, method.getName());
+        }
+    }
+
+    private static class Call implements Runnable {
+        final Object mRaw;
+        final Method mMethod;
+        final Object[] mArgs;
+
+        Call(Object raw, Method method, Object[] args) {
+            mRaw = raw;
+            mMethod = method;
+            mArgs = args;
+        }
+
+        @Override
+        public void run() {
+            invokeRaw(mRaw, mMethod, mArgs);
+        }
+    }
+
+    private static class CollapsedCall extends Call {
+        final AtomicReference<Object[]> mLatestArgs = new AtomicReference<>();
+
+        CollapsedCall(Object raw, Method method) {
+            super(raw, method, null);
+        }
+
+        @Override
+        public void run() {
+            Object[] args = mLatestArgs.getAndSet(null);
+            if (null != args) {
+                invokeRaw(mRaw, mMethod, args.length == 0 ? null : args);
+            }
+        }
+    }
 }
@@ -17,23 +17,64 @@
 package androidrubick.android.bitmap;
 
 import android.graphics.Bitmap;
+import android.support.annotation.FloatRange;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
 
-import java.util.Iterator;
+import java.util.ArrayList;
 import java.util.LinkedHashMap;
+import java.util.List;
 
+import androidrubick.android.app.AppInfos;
 import androidrubick.base.logging.ARLogger;
 
 /**
+ * LRU cache of {@link Bitmap}s.
+ *
+ * <p></p>
+ *
+ * By default entries are measured by pixels ({@code width * height});
+ * use {@link #byBytes(int, long)} or {@link #byMemoryRatio(int, float)}
+ * to measure entries by their real allocation size, see {@link Bitmaps#byteCountOf(Bitmap)}.
+ *
  * @since 1.0.0
  */
 public class BitmapCache extends LinkedHashMap<String, Bitmap> {
 
+    /**
+     * default ratio of {@link AppInfos#getMemoryClass()} used by {@link #byMemoryRatio(int, float)}
+     *
+     * @since 1.0.0
+     */
+    public static final float DEF_MEMORY_RATIO = 1f / 8f;
+
+    /**
+     * callback when an entry is evicted from, or rejected by the cache;
+     *
+     * the evicted {@link Bitmap} is no longer referenced by the cache,
+     * so it can be recycled or reused.
+     *
+     * @since 1.0.0
+     */
+    public interface EvictionListener {
+        /**
+         * @param key      key of the entry
+         * @param bm       the evicted or rejected {@link Bitmap}
+         * @param rejected true if the bitmap is too large to put into the cache;
+         *                 false if it was removed to keep the cache within its limits
+         * @since 1.0.0
+         */
+        void onEvicted(String key, Bitmap bm, boolean rejected);
+    }
+
     private static final long serialVersionUID = 1L;
 
+    private final boolean byteMode;
     private int maxCount;
-    private int maxPixels;
-    private int maxTotalPixels;
-    private int pixels;
+    private long maxSize;
+    private long maxTotalSize;
+    private long size;
+    private transient EvictionListener listener;
 
     /**
      * @param mc  max count of {@link Bitmap}
@@ -42,11 +83,97 @@ public class BitmapCache extends LinkedHashMap<String, Bitmap> {
      * @since 1.0.0
      */
     public BitmapCache(int mc, int mp, int mtp) {
+        this(mc, mp, mtp, false);
+    }
+
+    private BitmapCache(int mc, long ms, long mts, boolean byteMode) {
         super(8, 0.75F, true);
 
+        this.byteMode = byteMode;
         this.maxCount = mc;
-        this.maxPixels = mp;
-        this.maxTotalPixels = mtp;
+        this.maxSize = ms;
+        this.maxTotalSize = mts;
+    }
+
+    /**
+     * create a cache measuring entries by bytes
+     *
+     * @param mc  max count of {@link Bitmap}
+     * @param mtb max total bytes, also the max bytes of a single {@link Bitmap}
+     * @since 1.0.0
+     */
+    public static BitmapCache byBytes(int mc, long mtb) {
+        return byBytes(mc, mtb, mtb);
+    }
+
+    /**
+     * create a cache measuring entries by bytes
+     *
+     * @param mc  max count of {@link Bitmap}
+     * @param mb  max bytes of a single {@link Bitmap}
+     * @param mtb max total bytes
+     * @since 1.0.0
+     */
+    public static BitmapCache byBytes(int mc, long mb, long mtb) {
+        return new BitmapCache(mc, mb, mtb, true);
+    }
+
+    /**
+     * create a cache measuring entries by bytes,
+     *
+     * max total bytes is {@link #DEF_MEMORY_RATIO} of {@link AppInfos#getMemoryClass()}
+     *
+     * @param mc max count of {@link Bitmap}
+     * @since 1.0.0
+     */
+    public static BitmapCache byMemoryRatio(int mc) {
+        return byMemoryRatio(mc, DEF_MEMORY_RATIO);
+    }
+
+    /**
+     * create a cache measuring entries by bytes,
+     *
+     * max total bytes is {@code ratio} of {@link AppInfos#getMemoryClass()}
+     *
+     * @param mc    max count of {@link Bitmap}
+     * @param ratio (0, 1]
+     * @since 1.0.0
+     */
+    public static BitmapCache byMemoryRatio(int mc, @FloatRange(from = 0, to = 1, fromInclusive = false) float ratio) {
+        return byBytes(mc, AppInfos.memoryByRatio(ratio));
+    }
+
+    /**
+     * @param l listener notified when an entry is evicted or rejected
+     * @since 1.0.0
+     */
+    public BitmapCache setEvictionListener(@Nullable EvictionListener l) {
+        listener = l;
+        return this;
+    }
+
+    /**
+     * @return whether entries are measured by bytes or pixels
+     * @since 1.0.0
+     */
+    public boolean isByteMode() {
+        return byteMode;
+    }
+
+    /**
+     * @return total size of entries, bytes or pixels, see {@link #isByteMode()}
+     * @since 1.0.0
+     */
+    public long totalSize() {
+        return size;
+    }
+
+    /**
+     * @return max total size of entries, bytes or pixels, see {@link #isByteMode()}
+     * @since 1.0.0
+     */
+    public long maxTotalSize() {
+        return maxTotalSize;
     }
 
     /**
@@ -55,16 +182,17 @@ public class BitmapCache extends LinkedHashMap<String, Bitmap> {
     @Override
     public Bitmap put(String key, Bitmap bm) {
         Bitmap old = null;
-        int px = pixels(bm);
-        if (px <= maxPixels) {
-            pixels += px;
+        long s = sizeOf(bm);
+        if (s <= maxSize) {
+            size += s;
             old = super.put(key, bm);
             if (old != null) {
-                pixels -= pixels(old);
+                size -= sizeOf(old);
             }
             ARLogger.debug("put key: " + key);
         } else {
-            ARLogger.debug("reject key: " + key + ":" + px + ":" + bm.getWidth() + ":" + bm.getHeight());
+            ARLogger.debug("reject key: " + key + ":" + s + ":" + bm.getWidth() + ":" + bm.getHeight());
+            notifyEvicted(key, bm, true);
         }
         return old;
     }
@@ -76,9 +204,9 @@ public class BitmapCache extends LinkedHashMap<String, Bitmap> {
     public Bitmap remove(Object key) {
         Bitmap old = super.remove(key);
         if (old != null) {
-            pixels -= pixels(old);
+            size -= sizeOf(old);
         }
-        ARLogger.debug("remove pixels key: " + size() + ":" + pixels);
+        ARLogger.debug("remove size key: " + size() + ":" + size);
         return old;
     }
 
@@ -88,25 +216,50 @@ public class BitmapCache extends LinkedHashMap<String, Bitmap> {
     @Override
     public void clear() {
         super.clear();
-        pixels = 0;
+        size = 0;
     }
 
-    private int pixels(Bitmap bm) {
+    /**
+     * remove all entries, and notify the {@link EvictionListener} of each of them
+     *
+     * @since 1.0.0
+     */
+    public void evictAll() {
+        List<String> keys = new ArrayList<>(keySet());
+        for (String key : keys) {
+            evict(key);
+        }
+    }
+
+    /**
+     * measure {@link Bitmap}, bytes or pixels, see {@link #isByteMode()}
+     *
+     * @since 1.0.0
+     */
+    protected long sizeOf(@Nullable Bitmap bm) {
         if (bm == null) return 0;
-        return bm.getWidth() * bm.getHeight();
+        if (byteMode) return Bitmaps.byteCountOf(bm);
+        return (long) bm.getWidth() * bm.getHeight();
+    }
+
+    private void evict(String key) {
+        Bitmap old = super.remove(key);
+        if (old != null) {
+            size -= sizeOf(old);
+            notifyEvicted(key, old, false);
+        }
+    }
+
+    private void notifyEvicted(String key, @NonNull Bitmap bm, boolean rejected) {
+        EvictionListener l = listener;
+        if (null != l) {
+            l.onEvicted(key, bm, rejected);
+        }
     }
 
     private void shrink() {
-        if (pixels > maxTotalPixels) {
-            Iterator<String> keys = keySet().iterator();
-            while (keys.hasNext()) {
-                keys.next();
-                keys.remove();
-
-                if (pixels <= maxTotalPixels) {
-                    break;
-                }
-            }
+        while (size > maxTotalSize && !isEmpty()) {
+            evict(keySet().iterator().next());
         }
     }
 
@@ -115,15 +268,8 @@ public class BitmapCache extends LinkedHashMap<String, Bitmap> {
      */
     @Override
     public boolean removeEldestEntry(Entry<String, Bitmap> eldest) {
-        if (pixels > maxTotalPixels || size() > maxCount) {
-			/*
-            if(pixels > maxTotalPixels){
-				AQUtility.debug("evict by max size");
-			}else{
-				AQUtility.debug("evict by count", maxCount);
-			}
-			*/
-            remove(eldest.getKey());
+        if (size > maxTotalSize || size() > maxCount) {
+            evict(eldest.getKey());
         }
         shrink();
         return false;
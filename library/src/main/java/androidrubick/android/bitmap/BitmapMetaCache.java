@@ -0,0 +1,212 @@
+package androidrubick.android.bitmap;
+
+import android.support.annotation.IntRange;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.io.File;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import androidrubick.android.bitmap.loader.BaseBitmapLoader;
+import androidrubick.android.bitmap.loader.BitmapLoader;
+import androidrubick.android.io.op.IOOp;
+import androidrubick.base.logging.ARLogger;
+
+/**
+ * LRU cache of decoded bounds (width, height, mime type) of images,
+ * keyed by {@link BaseBitmapLoader#cacheKey()}, so that
+ * {@link Bitmaps#decodeSize(BitmapLoader)} need not parse the image header again;
+ * in-memory data (byte arrays and buffers) has no key and is not cached, since
+ * identifying it would read the whole image, while parsing the header does not.
+ *
+ * <p></p>
+ *
+ * the cache can be saved to and restored from a file, so that the header parse
+ * can also be skipped on warm starts.
+ *
+ * <p></p>
+ * Created by Yin Yong on 2018/1/11.
+ *
+ * @since 1.0.0
+ */
+public class BitmapMetaCache {
+
+    /**
+     * default max count of entries of {@link #getDefault()}
+     *
+     * @since 1.0.0
+     */
+    public static final int DEF_MAX_COUNT = 512;
+
+    private static final char SEP = '\t';
+    private static final char LINE_SEP = '\n';
+
+    /**
+     * decoded bounds of an image
+     *
+     * @since 1.0.0
+     */
+    public static class Meta {
+        /**
+         * @since 1.0.0
+         */
+        public final int width;
+        /**
+         * @since 1.0.0
+         */
+        public final int height;
+        /**
+         * maybe null
+         *
+         * @since 1.0.0
+         */
+        public final String mimeType;
+
+        /**
+         * @since 1.0.0
+         */
+        public Meta(int width, int height, @Nullable String mimeType) {
+            this.width = width;
+            this.height = height;
+            this.mimeType = mimeType;
+        }
+    }
+
+    private static volatile BitmapMetaCache sDefault = new BitmapMetaCache(DEF_MAX_COUNT);
+
+    /**
+     * @return the cache used by {@link Bitmaps#decodeSize(BitmapLoader)};
+     * null if disabled by {@link #setDefault(BitmapMetaCache)}
+     * @since 1.0.0
+     */
+    @Nullable
+    public static BitmapMetaCache getDefault() {
+        return sDefault;
+    }
+
+    /**
+     * @param cache null to disable the default cache
+     * @since 1.0.0
+     */
+    public static void setDefault(@Nullable BitmapMetaCache cache) {
+        sDefault = cache;
+    }
+
+    /**
+     * @return identity of the loader, or null if it cannot be cached
+     * @since 1.0.0
+     */
+    @Nullable
+    public static String keyOf(@Nullable BitmapLoader loader) {
+        if (loader instanceof BaseBitmapLoader) {
+            return ((BaseBitmapLoader) loader).cacheKey();
+        }
+        return null;
+    }
+
+    private final int mMaxCount;
+    private final LinkedHashMap<String, Meta> mEntries;
+
+    /**
+     * @param maxCount max count of entries
+     * @since 1.0.0
+     */
+    public BitmapMetaCache(@IntRange(from = 1) int maxCount) {
+        mMaxCount = maxCount;
+        mEntries = new LinkedHashMap<String, Meta>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Meta> eldest) {
+                return size() > mMaxCount;
+            }
+        };
+    }
+
+    /**
+     * @since 1.0.0
+     */
+    @Nullable
+    public synchronized Meta get(@Nullable String key) {
+        return null == key ? null : mEntries.get(key);
+    }
+
+    /**
+     * @since 1.0.0
+     */
+    public synchronized void put(@NonNull String key, @NonNull Meta meta) {
+        mEntries.put(key, meta);
+    }
+
+    /**
+     * @since 1.0.0
+     */
+    public synchronized void clear() {
+        mEntries.clear();
+    }
+
+    /**
+     * @since 1.0.0
+     */
+    public synchronized int size() {
+        return mEntries.size();
+    }
+
+    /**
+     * save all entries to the file, sync
+     *
+     * @return whether success
+     * @since 1.0.0
+     */
+    public boolean save(@NonNull File file) {
+        StringBuilder sb = new StringBuilder();
+        synchronized (this) {
+            for (Map.Entry<String, Meta> entry : mEntries.entrySet()) {
+                String key = entry.getKey();
+                if (key.indexOf(SEP) >= 0 || key.indexOf(LINE_SEP) >= 0) {
+                    continue;
+                }
+                Meta meta = entry.getValue();
+                sb.append(key).append(SEP)
+                        .append(meta.width).append(SEP)
+                        .append(meta.height).append(SEP)
+                        .append(null == meta.mimeType ? "" : meta.mimeType).append(LINE_SEP);
+            }
+        }
+        return IOOp.fromContent(sb.toString()).to(file);
+    }
+
+    /**
+     * restore entries from the file saved by {@link #save(File)}, sync
+     *
+     * @return whether success
+     * @since 1.0.0
+     */
+    public boolean restore(@NonNull File file) {
+        if (!file.isFile()) {
+            return false;
+        }
+        String content = IOOp.from(file).asString();
+        if (null == content) {
+            return false;
+        }
+        int count = 0;
+        for (String line : content.split(String.valueOf(LINE_SEP))) {
+            String[] parts = line.split(String.valueOf(SEP), -1);
+            if (parts.length != 4) {
+                continue;
+            }
+            try {
+                int w = Integer.parseInt(parts[1]);
+                int h = Integer.parseInt(parts[2]);
+                if (w > 0 && h > 0) {
+                    put(parts[0], new Meta(w, h, parts[3].length() == 0 ? null : parts[3]));
+                    count++;
+                }
+            } catch (NumberFormatException e) {
+                ARLogger.warning("BitmapMetaCache restore error: " + line);
+            }
+        }
+        ARLogger.debug("BitmapMetaCache restore: " + count);
+        return true;
+    }
+}
@@ -0,0 +1,421 @@
+package androidrubick.android.bitmap;
+
+import android.annotation.TargetApi;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Color;
+import android.os.Build;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import androidrubick.android.app.AppInfos;
+
+/**
+ * pool of mutable {@link Bitmap}s keyed by size and config, bitmaps in the pool
+ * can be reused by {@link BitmapFactory.Options#inBitmap} or be drawn into,
+ * instead of allocating new ones.
+ *
+ * <p></p>
+ *
+ * the pool owns the bitmaps put into it, bitmaps dropped to keep the pool
+ * within its limit will be recycled;
+ *
+ * set the pool as {@link BitmapCache.EvictionListener} of a {@link BitmapCache},
+ * so that evicted bitmaps go back into the pool; since a cached bitmap may still be
+ * shown, e.g. by an {@link android.widget.ImageView}, only bitmaps whose uses are tracked
+ * by {@link #acquire(Bitmap)} and {@link #release(Bitmap)} are pooled, once they are
+ * no longer used; other evicted bitmaps are left to the GC.
+ *
+ * <p></p>
+ *
+ * reuse is supported since {@link Build.VERSION_CODES#HONEYCOMB}; before
+ * {@link Build.VERSION_CODES#KITKAT}, only bitmaps with the same size can be reused.
+ *
+ * <p></p>
+ * Created by Yin Yong on 2018/1/10.
+ *
+ * @since 1.0.0
+ */
+public class BitmapPool implements BitmapCache.EvictionListener {
+
+    /**
+     * default ratio of {@link AppInfos#getMemoryClass()} used by {@link #getDefault()}
+     *
+     * @since 1.0.0
+     */
+    public static final float DEF_MEMORY_RATIO = 1f / 16f;
+
+    // 复用时，允许的最大浪费比率
+    private static final int MAX_SIZE_MULTIPLE = 2;
+
+    private static volatile BitmapPool sDefault;
+    private static volatile boolean sDefaultSet;
+
+    /**
+     * @return the pool shared by {@link BitmapsSync}, {@link BitmapsSync#resize},
+     * and {@link androidrubick.android.bitmap.loader.BmViewLoader};
+     * null if disabled by {@link #setDefault(BitmapPool)}
+     * @since 1.0.0
+     */
+    @Nullable
+    public static BitmapPool getDefault() {
+        if (!sDefaultSet) {
+            synchronized (BitmapPool.class) {
+                if (!sDefaultSet) {
+                    sDefault = supported() ? new BitmapPool(AppInfos.memoryByRatio(DEF_MEMORY_RATIO)) : null;
+                    sDefaultSet = true;
+                }
+            }
+        }
+        return sDefault;
+    }
+
+    /**
+     * @param pool null to disable the default pool
+     * @since 1.0.0
+     */
+    public static void setDefault(@Nullable BitmapPool pool) {
+        synchronized (BitmapPool.class) {
+            sDefault = pool;
+            sDefaultSet = true;
+        }
+    }
+
+    /**
+     * @return whether {@link Bitmap} reuse is supported on this device
+     * @since 1.0.0
+     */
+    public static boolean supported() {
+        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB;
+    }
+
+    private final long mMaxSize;
+    private final LinkedHashMap<Key, ArrayDeque<Bitmap>> mGroups = new LinkedHashMap<>(16, 0.75f, true);
+    private final Key mLookupKey = new Key();
+    private long mSize;
+    private long mHitCount;
+    private long mMissCount;
+    // 使用者声明的引用计数；Bitmap未重写equals，按对象比较
+    private final WeakHashMap<Bitmap, int[]> mRefs = new WeakHashMap<>();
+    // 已从缓存中移除，但仍在使用的Bitmap，不再使用时放入池中
+    private final WeakHashMap<Bitmap, Boolean> mEvictedInUse = new WeakHashMap<>();
+
+    /**
+     * @param maxSize max total bytes of bitmaps in the pool
+     * @since 1.0.0
+     */
+    public BitmapPool(long maxSize) {
+        mMaxSize = maxSize;
+    }
+
+    /**
+     * put {@link Bitmap} into the pool; the pool takes the ownership if accepted.
+     *
+     * @return true if accepted; false if cannot be reused, caller still owns the bitmap
+     * @since 1.0.0
+     */
+    public boolean put(@Nullable Bitmap bm) {
+        if (null == bm || !supported() || bm.isRecycled() || !bm.isMutable() || null == bm.getConfig()) {
+            return false;
+        }
+        final int bytes = Bitmaps.byteCountOf(bm);
+        if (bytes <= 0 || bytes > mMaxSize) {
+            return false;
+        }
+        synchronized (this) {
+            Key key = new Key().set(bm.getWidth(), bm.getHeight(), bm.getConfig());
+            ArrayDeque<Bitmap> group = mGroups.get(key);
+            if (null == group) {
+                group = new ArrayDeque<>();
+                mGroups.put(key, group);
+            }
+            group.push(bm);
+            mSize += bytes;
+            trimToSize(mMaxSize);
+        }
+        return true;
+    }
+
+    /**
+     * put {@link Bitmap} into the pool, if not accepted, recycle it
+     *
+     * @since 1.0.0
+     */
+    public void putOrRecycle(@Nullable Bitmap bm) {
+        if (null != bm && !put(bm)) {
+            bm.recycle();
+        }
+    }
+
+    /**
+     * get a mutable {@link Bitmap} with the exact size and config from the pool,
+     * its pixels are erased to {@link Color#TRANSPARENT}
+     *
+     * @return null if there is no suitable bitmap
+     * @since 1.0.0
+     */
+    @Nullable
+    public Bitmap get(int width, int height, @NonNull Bitmap.Config config) {
+        Bitmap bm = getDirty(width, height, config);
+        if (null != bm) {
+            bm.eraseColor(Color.TRANSPARENT);
+        }
+        return bm;
+    }
+
+    /**
+     * get a mutable {@link Bitmap} with the exact size and config from the pool,
+     * its pixels are left as they were
+     *
+     * @return null if there is no suitable bitmap
+     * @since 1.0.0
+     */
+    @Nullable
+    @TargetApi(Build.VERSION_CODES.KITKAT)
+    public synchronized Bitmap getDirty(int width, int height, @NonNull Bitmap.Config config) {
+        if (width <= 0 || height <= 0) {
+            return null;
+        }
+        ArrayDeque<Bitmap> exact = mGroups.get(mLookupKey.set(width, height, config));
+        Bitmap bm = poll(exact);
+        if (null != exact && exact.isEmpty()) {
+            mGroups.remove(mLookupKey);
+        }
+        if (null == bm && Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
+            // KITKAT之后，可以复用足够大的图片
+            final long need = (long) width * height * bytesPerPixel(config);
+            Iterator<Map.Entry<Key, ArrayDeque<Bitmap>>> it = mGroups.entrySet().iterator();
+            while (it.hasNext()) {
+                Map.Entry<Key, ArrayDeque<Bitmap>> entry = it.next();
+                Key key = entry.getKey();
+                long bytes = (long) key.width * key.height * bytesPerPixel(key.config);
+                if (key.config == config && bytes >= need && bytes <= need * MAX_SIZE_MULTIPLE) {
+                    bm = poll(entry.getValue());
+                    if (entry.getValue().isEmpty()) {
+                        it.remove();
+                    }
+                    break;
+                }
+            }
+            if (null != bm) {
+                bm.reconfigure(width, height, config);
+            }
+        }
+        if (null == bm) {
+            mMissCount++;
+        } else {
+            mHitCount++;
+        }
+        return bm;
+    }
+
+    /**
+     * set {@link BitmapFactory.Options#inBitmap} with a bitmap from the pool
+     * which can hold the decoded result; also set {@link BitmapFactory.Options#inMutable},
+     * so that the decoded result can be put into the pool later
+     *
+     * @param options     decode options, whose {@link BitmapFactory.Options#inSampleSize}
+     *                    and {@link BitmapFactory.Options#inPreferredConfig} are set
+     * @param outWidth    expected width of decoded bitmap
+     * @param outHeight   expected height of decoded bitmap
+     * @param scaled      whether the decoder will scale the result, by density etc.
+     * @return true if {@link BitmapFactory.Options#inBitmap} is set
+     * @since 1.0.0
+     */
+    @TargetApi(Build.VERSION_CODES.HONEYCOMB)
+    public boolean prepareDecode(@NonNull BitmapFactory.Options options, int outWidth, int outHeight,
+                                 boolean scaled) {
+        if (!supported()) {
+            return false;
+        }
+        // 使解码得到的图片之后可以放入池中复用
+        options.inMutable = true;
+        // KITKAT之前，只能复用相同尺寸的图片，并且不能有缩放
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.KITKAT
+                && (options.inSampleSize > 1 || scaled)) {
+            return false;
+        }
+        Bitmap.Config config = null == options.inPreferredConfig
+                ? Bitmap.Config.ARGB_8888 : options.inPreferredConfig;
+        Bitmap bm = getDirty(outWidth, outHeight, config);
+        if (null == bm) {
+            return false;
+        }
+        options.inBitmap = bm;
+        return true;
+    }
+
+    /**
+     * @return count of successful {@link #getDirty}
+     * @since 1.0.0
+     */
+    public synchronized long hitCount() {
+        return mHitCount;
+    }
+
+    /**
+     * @return count of {@link #getDirty} which returns null
+     * @since 1.0.0
+     */
+    public synchronized long missCount() {
+        return mMissCount;
+    }
+
+    /**
+     * @return total bytes of bitmaps in the pool
+     * @since 1.0.0
+     */
+    public synchronized long size() {
+        return mSize;
+    }
+
+    /**
+     * recycle all bitmaps in the pool
+     *
+     * @since 1.0.0
+     */
+    public synchronized void clear() {
+        trimToSize(0);
+    }
+
+    /**
+     * mark the bitmap as used, such as shown by a view; it will not be reused
+     * until every {@link #acquire(Bitmap)} is paired by a {@link #release(Bitmap)}
+     *
+     * @since 1.0.0
+     */
+    public synchronized void acquire(@NonNull Bitmap bm) {
+        int[] refs = mRefs.get(bm);
+        if (null == refs) {
+            mRefs.put(bm, new int[]{1});
+        } else {
+            refs[0]++;
+        }
+    }
+
+    /**
+     * mark one use of the bitmap as ended; if it is not used any more, and has been
+     * evicted from {@link BitmapCache}, it goes into the pool
+     *
+     * @see #acquire(Bitmap)
+     * @since 1.0.0
+     */
+    public void release(@NonNull Bitmap bm) {
+        synchronized (this) {
+            int[] refs = mRefs.get(bm);
+            if (null == refs || refs[0] <= 0 || --refs[0] > 0 || null == mEvictedInUse.remove(bm)) {
+                return;
+            }
+            mRefs.remove(bm);
+        }
+        put(bm);
+    }
+
+    /**
+     * bitmaps evicted from {@link BitmapCache} go into the pool, only if their uses are
+     * tracked by {@link #acquire(Bitmap)}, after they are not used any more;
+     * rejected ones are still used by the caller, so are ignored
+     *
+     * @since 1.0.0
+     */
+    @Override
+    public void onEvicted(String key, Bitmap bm, boolean rejected) {
+        if (rejected) {
+            return;
+        }
+        synchronized (this) {
+            int[] refs = mRefs.get(bm);
+            if (null == refs) {
+                // 没有声明使用，可能仍在显示，不能复用
+                return;
+            }
+            if (refs[0] > 0) {
+                mEvictedInUse.put(bm, Boolean.TRUE);
+                return;
+            }
+            mRefs.remove(bm);
+        }
+        put(bm);
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "BitmapPool{size=" + mSize + ", maxSize=" + mMaxSize
+                + ", hit=" + mHitCount + ", miss=" + mMissCount + "}";
+    }
+
+    private Bitmap poll(ArrayDeque<Bitmap> group) {
+        if (null == group) {
+            return null;
+        }
+        Bitmap bm = group.poll();
+        if (null != bm) {
+            mSize -= Bitmaps.byteCountOf(bm);
+        }
+        return bm;
+    }
+
+    private void trimToSize(long maxSize) {
+        Iterator<ArrayDeque<Bitmap>> it = mGroups.values().iterator();
+        while (mSize > maxSize && it.hasNext()) {
+            ArrayDeque<Bitmap> group = it.next();
+            while (mSize > maxSize && !group.isEmpty()) {
+                Bitmap bm = group.pollLast();
+                mSize -= Bitmaps.byteCountOf(bm);
+                bm.recycle();
+            }
+            if (group.isEmpty()) {
+                it.remove();
+            }
+        }
+    }
+
+    private static int bytesPerPixel(Bitmap.Config config) {
+        switch (config) {
+            case ALPHA_8:
+                return 1;
+            case RGB_565:
+            case ARGB_4444:
+                return 2;
+            case ARGB_8888:
+                return 4;
+            default:
+                return 8;
+        }
+    }
+
+    private static class Key {
+        int width;
+        int height;
+        Bitmap.Config config;
+
+        Key set(int width, int height, Bitmap.Config config) {
+            this.width = width;
+            this.height = height;
+            this.config = config;
+            return this;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key key = (Key) o;
+            return width == key.width && height == key.height && config == key.config;
+        }
+
+        @Override
+        public int hashCode() {
+            int result = width;
+            result = 31 * result + height;
+            result = 31 * result + (null != config ? config.hashCode() : 0);
+            return result;
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package androidrubick.android.bitmap;
 
+import android.annotation.TargetApi;
 import android.content.Context;
 import android.content.Intent;
 import android.graphics.Bitmap;
@@ -46,6 +47,10 @@ public class Bitmaps {
     }
 
     /**
+     * decode bounds of the image;
+     *
+     * bounds are cached by {@link BitmapMetaCache#getDefault()}, if the loader can be identified
+     *
      * @since 1.0.0
      */
     @NonNull
@@ -54,7 +59,21 @@ public class Bitmaps {
         options.inJustDecodeBounds = true;
         options.outWidth = -1;
         options.outHeight = -1;
+
+        BitmapMetaCache cache = BitmapMetaCache.getDefault();
+        String key = null == cache ? null : BitmapMetaCache.keyOf(loader);
+        BitmapMetaCache.Meta meta = null == key ? null : cache.get(key);
+        if (null != meta) {
+            options.outWidth = meta.width;
+            options.outHeight = meta.height;
+            options.outMimeType = meta.mimeType;
+            return options;
+        }
+
         loadIgnoreExc(loader, options);
+        if (null != key && options.outWidth > 0 && options.outHeight > 0) {
+            cache.put(key, new BitmapMetaCache.Meta(options.outWidth, options.outHeight, options.outMimeType));
+        }
         return options;
     }
 
@@ -103,6 +122,30 @@ public class Bitmaps {
         return newConfig;
     }
 
+    /**
+     * real memory size of the {@link Bitmap};
+     *
+     * use {@link Bitmap#getAllocationByteCount()} since {@link Build.VERSION_CODES#KITKAT},
+     * {@link Bitmap#getByteCount()} since {@link Build.VERSION_CODES#HONEYCOMB_MR1}
+     *
+     * @param bm maybe null, return 0
+     * @return bytes of the {@link Bitmap}
+     * @since 1.0.0
+     */
+    @TargetApi(Build.VERSION_CODES.KITKAT)
+    public static int byteCountOf(@Nullable Bitmap bm) {
+        if (null == bm) {
+            return 0;
+        }
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
+            return bm.getAllocationByteCount();
+        }
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB_MR1) {
+            return bm.getByteCount();
+        }
+        return bm.getRowBytes() * bm.getHeight();
+    }
+
     /**
      * determine scale factor from target {@code param} with the {@link BitmapLoader loader}
      *
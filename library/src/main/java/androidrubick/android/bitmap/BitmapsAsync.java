@@ -4,7 +4,13 @@ import android.graphics.Bitmap;
 import android.support.annotation.NonNull;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadPoolExecutor;
 
+import androidrubick.android.async.ARExecutors;
 import androidrubick.android.async.AsyncOp;
 import androidrubick.android.callback.OpCallback;
 import androidrubick.android.callback.OpPCallback;
@@ -21,6 +27,10 @@ import androidrubick.android.bitmap.loader.BitmapLoaderFactory;
  */
 public class BitmapsAsync {
 
+    // 解码使用有限的线程，最近的请求（通常是可见的图片）最先解码
+    private static final ThreadPoolExecutor DECODE_EXECUTOR =
+            ARExecutors.newLifoPool("BitmapsAsync", ARExecutors.cpuCount());
+
     private static abstract class Async extends AsyncOp<Void, Void, Bitmap> {
         private final OpPCallback<Bitmap> mCb;
 
@@ -34,32 +44,186 @@ public class BitmapsAsync {
         }
     }
 
+    /**
+     * handle of an async load request
+     *
+     * @since 1.0.0
+     */
+    public static final class Request {
+        private final OpPCallback<Bitmap> mCb;
+        private final DecodeParam mParam;
+        private InFlight mInFlight;
+        private volatile boolean mCancelled;
+
+        private Request(@NonNull OpPCallback<Bitmap> cb, DecodeParam param) {
+            mCb = cb;
+            mParam = param;
+        }
+
+        /**
+         * detach from the load; the callback will not be invoked.
+         *
+         * if no request is attached to the load any more, the load will be cancelled
+         *
+         * @since 1.0.0
+         */
+        public void cancel() {
+            mCancelled = true;
+            detach(this);
+        }
+
+        /**
+         * @since 1.0.0
+         */
+        public boolean isCancelled() {
+            return mCancelled;
+        }
+    }
+
+    // 进行中的加载，相同的加载器和参数的请求共享同一次加载
+    private static final Map<String, InFlight> sInFlight = new HashMap<>();
+
+    private static class InFlight {
+        // 在解码线程中计算，null表示不与其他请求共享
+        String key;
+        final List<Request> requests = new ArrayList<>(1);
+        AsyncOp<Void, Void, Bitmap> op;
+    }
+
+    private static class LoadAsync extends AsyncOp<Void, Void, Bitmap> {
+        private final BitmapLoader mLoader;
+        private final DecodeParam mParam;
+        private final InFlight mInFlight;
+
+        LoadAsync(BitmapLoader loader, DecodeParam param, InFlight inFlight) {
+            mLoader = loader;
+            mParam = param;
+            mInFlight = inFlight;
+        }
+
+        @Override
+        protected Bitmap doInBackground(Void... params) {
+            // 计算key可能需要访问文件，不在调用线程中进行
+            final String loaderKey = BitmapMetaCache.keyOf(mLoader);
+            if (null != loaderKey && !join(loaderKey + "|" + (null == mParam ? "" : mParam.key()))) {
+                return null;
+            }
+            return BitmapsSync.load(mLoader, mParam, cancelToken());
+        }
+
+        /**
+         * @return false if the requests are moved to a pending load of the same key,
+         * or all of them are cancelled
+         */
+        private boolean join(String key) {
+            synchronized (sInFlight) {
+                if (mInFlight.requests.isEmpty()) {
+                    return false;
+                }
+                InFlight pending = sInFlight.get(key);
+                if (null != pending) {
+                    for (Request request : mInFlight.requests) {
+                        request.mInFlight = pending;
+                    }
+                    pending.requests.addAll(mInFlight.requests);
+                    mInFlight.requests.clear();
+                    return false;
+                }
+                mInFlight.key = key;
+                sInFlight.put(key, mInFlight);
+                return true;
+            }
+        }
+
+        @Override
+        protected void onPostExecute(Bitmap result) {
+            deliver(result);
+        }
+
+        @Override
+        protected void onCancelled(Bitmap result) {
+            // 超时、取消或者解码抛出异常，等待中的请求都回调失败
+            deliver(null);
+        }
+
+        private void deliver(Bitmap result) {
+            Request[] requests;
+            synchronized (sInFlight) {
+                if (null != mInFlight.key && sInFlight.get(mInFlight.key) == mInFlight) {
+                    sInFlight.remove(mInFlight.key);
+                }
+                requests = mInFlight.requests.toArray(new Request[mInFlight.requests.size()]);
+                mInFlight.requests.clear();
+            }
+            for (Request request : requests) {
+                if (request.mCancelled) {
+                    continue;
+                }
+                if (null != result && null != request.mParam) {
+                    request.mParam.outWidth = result.getWidth();
+                    request.mParam.outHeight = result.getHeight();
+                }
+                request.mCb.opResult(null != result, result);
+            }
+        }
+    }
+
+    private static void detach(Request request) {
+        AsyncOp<Void, Void, Bitmap> op = null;
+        synchronized (sInFlight) {
+            InFlight inFlight = request.mInFlight;
+            if (null == inFlight || !inFlight.requests.remove(request)) {
+                return;
+            }
+            if (inFlight.requests.isEmpty()) {
+                if (null != inFlight.key && sInFlight.get(inFlight.key) == inFlight) {
+                    sInFlight.remove(inFlight.key);
+                }
+                op = inFlight.op;
+            }
+        }
+        if (null != op) {
+            op.cancel(false);
+            // 移除还在队列中的任务
+            DECODE_EXECUTOR.purge();
+        }
+    }
+
     /**
      * 异步加载图片
      *
      * @param loader {@link Bitmap}加载器
      * @since 1.0.0
      */
-    public static void load(final BitmapLoader loader, final OpPCallback<Bitmap> cb) {
-        load(loader, null, cb);
+    public static Request load(final BitmapLoader loader, final OpPCallback<Bitmap> cb) {
+        return load(loader, null, cb);
     }
 
     /**
      * 异步加载图片
      *
+     * <p></p>
+     *
+     * 如果相同的图片（见{@link BitmapMetaCache#keyOf(BitmapLoader)}）和参数正在加载中，
+     * 将等待该次加载完成，并回调同一个{@link Bitmap}对象，使用者不应该回收它
+     *
      * @param loader {@link Bitmap}加载器
      * @param cb     回调，如果加载成功回调将会返回最终加载的图片
+     * @return 请求句柄，用于取消回调；{@code cb} 为null时，返回null
      * @since 1.0.0
      */
-    public static void load(final BitmapLoader loader, final DecodeParam param, final OpPCallback<Bitmap> cb) {
-        if (null == cb) return;
+    public static Request load(final BitmapLoader loader, final DecodeParam param, final OpPCallback<Bitmap> cb) {
+        if (null == cb) return null;
 
-        new Async(cb) {
-            @Override
-            protected final Bitmap doInBackground(Void... params) {
-                return BitmapsSync.load(loader, param);
-            }
-        }.execute();
+        final Request request = new Request(cb, param);
+        final InFlight inFlight = new InFlight();
+        synchronized (sInFlight) {
+            inFlight.requests.add(request);
+            inFlight.op = new LoadAsync(loader, param, inFlight);
+            request.mInFlight = inFlight;
+        }
+        inFlight.op.executeOnExecutor(DECODE_EXECUTOR);
+        return request;
     }
 
     /**
@@ -69,8 +233,8 @@ public class BitmapsAsync {
      * @param cb   回调，如果加载成功回调将会返回最终加载的图片
      * @since 1.0.0
      */
-    public static void load(final File file, final OpPCallback<Bitmap> cb) {
-        load(file, null, cb);
+    public static Request load(final File file, final OpPCallback<Bitmap> cb) {
+        return load(file, null, cb);
     }
 
     /**
@@ -79,10 +243,11 @@ public class BitmapsAsync {
      * @param file  文件对象
      * @param param 加载参数
      * @param cb    回调，如果加载成功回调将会返回最终加载的图片
+     * @return 请求句柄，用于取消回调
      * @since 1.0.0
      */
-    public static void load(final File file, final DecodeParam param, final OpPCallback<Bitmap> cb) {
-        load(BitmapLoaderFactory.fromFile(file), param, cb);
+    public static Request load(final File file, final DecodeParam param, final OpPCallback<Bitmap> cb) {
+        return load(BitmapLoaderFactory.fromFile(file), param, cb);
     }
 
     /**
@@ -127,6 +292,6 @@ public class BitmapsAsync {
             protected Bitmap doInBackground(Void... params) {
                 return BitmapsSync.resize(bm, param);
             }
-        }.execute();
+        }.executeOnExecutor(DECODE_EXECUTOR);
     }
 }
@@ -1,5 +1,6 @@
 package androidrubick.android.bitmap;
 
+import android.content.res.Resources;
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
 import android.graphics.Canvas;
@@ -8,6 +9,7 @@ import android.support.annotation.Nullable;
 import java.io.File;
 import java.io.FileOutputStream;
 
+import androidrubick.android.async.CancelToken;
 import androidrubick.android.bitmap.loader.BitmapLoader;
 import androidrubick.android.bitmap.loader.BitmapLoaderFactory;
 import androidrubick.android.io.IOUtils;
@@ -70,25 +72,67 @@ public class BitmapsSync {
      * @since 1.0.0
      */
     public static Bitmap load(BitmapLoader loader, DecodeParam param) {
-        if (null == loader) return null;
+        return load(loader, param, null);
+    }
+
+    /**
+     * 同步加载图片，可以通过{@code token}取消
+     *
+     * @param loader {@link Bitmap}加载器
+     * @param token  取消加载的标记，null-ok；如果取消，将尽快停止解码，并返回null
+     * @return 如果加载成功回调将会返回最终加载的图片
+     * @since 1.0.0
+     */
+    public static Bitmap load(BitmapLoader loader, DecodeParam param, @Nullable CancelToken token) {
+        if (null == loader || CancelToken.isCancelled(token)) return null;
 
         // use dummy
-        if (null == param || !param.hasValidPreference()) return loadIgnoreExc(loader, null);
+        if (null == param || !param.hasValidPreference()) {
+            return decode(loader, new BitmapFactory.Options(), token);
+        }
 
         float scale[] = Bitmaps.calScale(loader, param);
         if (param.outWidth <= 0 || param.outHeight <= 0) return null;
+        if (CancelToken.isCancelled(token)) return null;
 
         final int ow = param.outWidth;
         final int oh = param.outHeight;
-        int sampleSize = Math.max(1, Math.round(1f / Math.min(scale[0], scale[1])));
+        final int targetW = Math.max(1, (int) (ow * scale[0]));
+        final int targetH = Math.max(1, (int) (oh * scale[1]));
 
         BitmapFactory.Options sampleOps = new BitmapFactory.Options();
-        sampleOps.inSampleSize = sampleSize;
+        boolean scaled = false;
+        if (scale[0] == scale[1]) {
+            // 等比缩放时，先用不小于目标大小的sample size，
+            // 再通过inDensity/inTargetDensity缩放，一次解码得到目标大小
+            sampleOps.inSampleSize = sampleSizeNotLessThan(ow, oh, targetW, targetH);
+            if (targetW * sampleOps.inSampleSize != ow) {
+                sampleOps.inScaled = true;
+                sampleOps.inDensity = ow;
+                sampleOps.inTargetDensity = targetW * sampleOps.inSampleSize;
+                scaled = true;
+            }
+        } else {
+            sampleOps.inSampleSize = Math.max(1, Math.round(1f / Math.min(scale[0], scale[1])));
+        }
+        final int sampleSize = sampleOps.inSampleSize;
 
-        Bitmap bm = loadIgnoreExc(loader, sampleOps);
+        Bitmap bm = scaled
+                ? decode(loader, sampleOps, targetW, targetH, true, token)
+                : decode(loader, sampleOps, (ow + sampleSize - 1) / sampleSize,
+                (oh + sampleSize - 1) / sampleSize, false, token);
         if (null == bm) {
             return null;
         }
+        if (CancelToken.isCancelled(token)) {
+            recycle(bm);
+            return null;
+        }
+        if (scaled) {
+            // inDensity/inTargetDensity只用于缩放，解码后其density是像素数，而非真实的密度；
+            // 恢复为未缩放解码时的默认密度，避免绘制时被再次缩放
+            bm.setDensity(Resources.getSystem().getDisplayMetrics().densityDpi);
+        }
 
         // 因为sample size得到的未必是目标大小
         // check size
@@ -99,21 +143,19 @@ public class BitmapsSync {
         param.outWidth = w;
         param.outHeight = h;
 
-        final int targetW = (int) (ow * scale[0]);
-        final int targetH = (int) (oh * scale[1]);
-
         // 五分之一的出入
         final float minDeltaScale = 0.2f;
         final int minDelta = Math.min((int) (w * minDeltaScale), (int) (h * minDeltaScale));
 
         Bitmap reScaleBm = null;
-        if (Math.abs(w - targetW) > minDelta || Math.abs(h - targetH) > minDelta) {
-            // 如果获得的图片大小比实际需要的大，需要进行resize
+        if ((Math.abs(w - targetW) > minDelta || Math.abs(h - targetH) > minDelta)
+                && !CancelToken.isCancelled(token)) {
+            // 如果获得的图片大小与实际需要的相差太大（非等比缩放，或者解码器未按density缩放），需要进行resize
             reScaleBm = resize(bm, DecodeParam.preferredScale((float) targetW / (float) w,
                     (float) targetH / (float) h));
         }
         if (null != reScaleBm) {
-            bm.recycle();
+            recycle(bm);
             bm = reScaleBm;
 
             // get result size
@@ -123,6 +165,70 @@ public class BitmapsSync {
         return bm;
     }
 
+    /**
+     * @return the largest power of 2 sample size, with which decoded size is not less than target size
+     */
+    private static int sampleSizeNotLessThan(int w, int h, int targetW, int targetH) {
+        int sampleSize = 1;
+        while (w / (sampleSize * 2) >= targetW && h / (sampleSize * 2) >= targetH) {
+            sampleSize *= 2;
+        }
+        return sampleSize;
+    }
+
+    /**
+     * decode with a reusable bitmap from {@link BitmapPool#getDefault()} if possible
+     */
+    private static Bitmap decode(BitmapLoader loader, BitmapFactory.Options options,
+                                 int outWidth, int outHeight, boolean scaled,
+                                 @Nullable CancelToken token) {
+        BitmapPool pool = BitmapPool.getDefault();
+        if (null != pool && pool.prepareDecode(options, outWidth, outHeight, scaled)) {
+            Bitmap bm = decode(loader, options, token);
+            if (null != bm || CancelToken.isCancelled(token)) {
+                return bm;
+            }
+            // 复用失败，放回池中，重新加载
+            pool.put(options.inBitmap);
+            options.inBitmap = null;
+        }
+        return decode(loader, options, token);
+    }
+
+    /**
+     * decode, and request the decoder to stop when {@code token} is cancelled
+     */
+    private static Bitmap decode(BitmapLoader loader, final BitmapFactory.Options options,
+                                 @Nullable CancelToken token) {
+        if (null == token) {
+            return loadIgnoreExc(loader, options);
+        }
+        Runnable cancelDecode = new Runnable() {
+            @Override
+            public void run() {
+                options.requestCancelDecode();
+            }
+        };
+        token.addOnCancelListener(cancelDecode);
+        try {
+            return loadIgnoreExc(loader, options);
+        } finally {
+            token.removeOnCancelListener(cancelDecode);
+        }
+    }
+
+    /**
+     * put the bitmap no longer used into {@link BitmapPool#getDefault()}, or recycle it
+     */
+    private static void recycle(Bitmap bm) {
+        BitmapPool pool = BitmapPool.getDefault();
+        if (null != pool) {
+            pool.putOrRecycle(bm);
+        } else {
+            bm.recycle();
+        }
+    }
+
     /**
      * 同步保存图片文件
      *
@@ -170,7 +276,12 @@ public class BitmapsSync {
         int w = (int) (width * scaleX);
         int h = (int) (height * scaleY);
         try {
-            Bitmap result = Bitmap.createBitmap(w, h, useConfig(bm, Bitmap.Config.RGB_565));
+            Bitmap.Config config = useConfig(bm, Bitmap.Config.RGB_565);
+            BitmapPool pool = BitmapPool.getDefault();
+            Bitmap result = null == pool ? null : pool.get(w, h, config);
+            if (null == result) {
+                result = Bitmap.createBitmap(w, h, config);
+            }
             Canvas canvas = new Canvas(result);
             canvas.scale(scaleX, scaleY);
             canvas.drawBitmap(bm, 0, 0, null);
@@ -0,0 +1,229 @@
+package androidrubick.android.bitmap;
+
+import android.graphics.Bitmap;
+import android.support.annotation.FloatRange;
+import android.support.annotation.IntRange;
+import android.support.annotation.Nullable;
+
+import androidrubick.android.app.AppInfos;
+
+/**
+ * thread-safe {@link BitmapCache}, for decode workers and UI thread
+ * hitting the cache at the same time.
+ *
+ * <p></p>
+ *
+ * entries are spread across lock-striped segments by the hash of their keys,
+ * each segment is a {@link BitmapCache} with its own LRU order and its own lock,
+ * so that there is no global lock; limits of the cache are divided among the segments.
+ * every segment can still hold a {@link Bitmap} of the max single size, so there are
+ * fewer segments if the max single size is large relative to the max total size;
+ * {@link #byBytes(int, long)} and {@link #byMemoryRatio(int, float)} limit a single
+ * {@link Bitmap} to {@code 1/}{@link #DEF_SEGMENTS} of the total for this reason.
+ *
+ * <p></p>
+ * Created by Yin Yong on 2018/1/10.
+ *
+ * @since 1.0.0
+ */
+public class ConcurrentBitmapCache {
+
+    private static final int MAX_SEGMENTS = 16;
+
+    /**
+     * segments of the caches created by {@link #byBytes(int, long)} and
+     * {@link #byMemoryRatio(int, float)}, whose max bytes of a single {@link Bitmap}
+     * is the max total bytes divided by it
+     *
+     * @since 1.0.0
+     */
+    public static final int DEF_SEGMENTS = 4;
+
+    private final BitmapCache[] mSegments;
+    private final int mSegmentMask;
+
+    /**
+     * measure entries by pixels, see {@link BitmapCache#BitmapCache(int, int, int)}
+     *
+     * @param mc  max count of {@link Bitmap}
+     * @param mp  max pixels
+     * @param mtp max total pixels
+     * @since 1.0.0
+     */
+    public ConcurrentBitmapCache(int mc, int mp, int mtp) {
+        this(mc, mp, mtp, false, defConcurrencyLevel());
+    }
+
+    private ConcurrentBitmapCache(int mc, long ms, long mts, boolean byteMode, int concurrencyLevel) {
+        // 每个分段都要能容纳一个最大的Bitmap，否则较大的Bitmap会被拒绝
+        final long maxSegments = Math.max(1, mts / Math.max(1, ms));
+        int n = 1;
+        while (n < concurrencyLevel && n < MAX_SEGMENTS && n * 2 <= maxSegments) {
+            n <<= 1;
+        }
+        final int segMc = Math.max(1, (mc + n - 1) / n);
+        final long segMts = Math.max(1, mts / n);
+        final long segMs = Math.min(ms, mts);
+        mSegments = new BitmapCache[n];
+        mSegmentMask = n - 1;
+        for (int i = 0; i < n; i++) {
+            mSegments[i] = byteMode
+                    ? BitmapCache.byBytes(segMc, segMs, segMts)
+                    : new BitmapCache(segMc, (int) segMs, (int) segMts);
+        }
+    }
+
+    /**
+     * measure entries by bytes, see {@link BitmapCache#byBytes(int, long)}
+     *
+     * @param mc  max count of {@link Bitmap}
+     * @param mtb max total bytes; max bytes of a single {@link Bitmap} is
+     *            {@code mtb / }{@link #DEF_SEGMENTS}
+     * @since 1.0.0
+     */
+    public static ConcurrentBitmapCache byBytes(int mc, long mtb) {
+        return byBytes(mc, Math.max(1, mtb / DEF_SEGMENTS), mtb, defConcurrencyLevel());
+    }
+
+    /**
+     * measure entries by bytes, see {@link BitmapCache#byBytes(int, long, long)}
+     *
+     * @param mc               max count of {@link Bitmap}
+     * @param mb               max bytes of a single {@link Bitmap}
+     * @param mtb              max total bytes
+     * @param concurrencyLevel estimated number of concurrently accessing threads
+     * @since 1.0.0
+     */
+    public static ConcurrentBitmapCache byBytes(int mc, long mb, long mtb,
+                                                @IntRange(from = 1) int concurrencyLevel) {
+        return new ConcurrentBitmapCache(mc, mb, mtb, true, concurrencyLevel);
+    }
+
+    /**
+     * measure entries by bytes, see {@link BitmapCache#byMemoryRatio(int, float)};
+     * max bytes of a single {@link Bitmap} is the max total bytes / {@link #DEF_SEGMENTS}
+     *
+     * @param mc    max count of {@link Bitmap}
+     * @param ratio (0, 1]
+     * @since 1.0.0
+     */
+    public static ConcurrentBitmapCache byMemoryRatio(int mc, @FloatRange(from = 0, to = 1, fromInclusive = false) float ratio) {
+        return byBytes(mc, AppInfos.memoryByRatio(ratio));
+    }
+
+    private static int defConcurrencyLevel() {
+        return Runtime.getRuntime().availableProcessors() * 2;
+    }
+
+    private BitmapCache segmentFor(Object key) {
+        int h = null == key ? 0 : key.hashCode();
+        h ^= (h >>> 16);
+        return mSegments[h & mSegmentMask];
+    }
+
+    /**
+     * the listener is called within the lock of the segment holding the entry
+     *
+     * @param l listener notified when an entry is evicted or rejected
+     * @since 1.0.0
+     */
+    public ConcurrentBitmapCache setEvictionListener(@Nullable BitmapCache.EvictionListener l) {
+        for (BitmapCache seg : mSegments) {
+            synchronized (seg) {
+                seg.setEvictionListener(l);
+            }
+        }
+        return this;
+    }
+
+    /**
+     * @since 1.0.0
+     */
+    public Bitmap get(String key) {
+        BitmapCache seg = segmentFor(key);
+        synchronized (seg) {
+            return seg.get(key);
+        }
+    }
+
+    /**
+     * @since 1.0.0
+     */
+    public Bitmap put(String key, Bitmap bm) {
+        BitmapCache seg = segmentFor(key);
+        synchronized (seg) {
+            return seg.put(key, bm);
+        }
+    }
+
+    /**
+     * @since 1.0.0
+     */
+    public Bitmap remove(String key) {
+        BitmapCache seg = segmentFor(key);
+        synchronized (seg) {
+            return seg.remove(key);
+        }
+    }
+
+    /**
+     * @since 1.0.0
+     */
+    public boolean containsKey(String key) {
+        BitmapCache seg = segmentFor(key);
+        synchronized (seg) {
+            return seg.containsKey(key);
+        }
+    }
+
+    /**
+     * @since 1.0.0
+     */
+    public void clear() {
+        for (BitmapCache seg : mSegments) {
+            synchronized (seg) {
+                seg.clear();
+            }
+        }
+    }
+
+    /**
+     * @see BitmapCache#evictAll()
+     * @since 1.0.0
+     */
+    public void evictAll() {
+        for (BitmapCache seg : mSegments) {
+            synchronized (seg) {
+                seg.evictAll();
+            }
+        }
+    }
+
+    /**
+     * @return count of entries; not a snapshot, segments are counted one by one
+     * @since 1.0.0
+     */
+    public int size() {
+        int size = 0;
+        for (BitmapCache seg : mSegments) {
+            synchronized (seg) {
+                size += seg.size();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * @return total size of entries, bytes or pixels; not a snapshot, segments are counted one by one
+     * @since 1.0.0
+     */
+    public long totalSize() {
+        long size = 0;
+        for (BitmapCache seg : mSegments) {
+            synchronized (seg) {
+                size += seg.totalSize();
+            }
+        }
+        return size;
+    }
+}
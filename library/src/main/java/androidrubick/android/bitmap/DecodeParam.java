@@ -227,6 +227,14 @@ public class DecodeParam {
         this.inUniformScale = false;
     }
 
+    /**
+     * identity of the preference, not including output fields
+     */
+    /*package*/ String key() {
+        return inPreferredWidth + "," + inPreferredHeight + "," + inPreferredPixels + ","
+                + inScaleX + "," + inScaleY + "," + inUniformScale;
+    }
+
     /*package*/ boolean hasValidPreference() {
         return hasPreferredSize() || hasPreferredScale() || hasPreferredPixels();
     }
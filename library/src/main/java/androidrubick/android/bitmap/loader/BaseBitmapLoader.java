@@ -27,5 +27,17 @@ public abstract class BaseBitmapLoader implements BitmapLoader {
         }
     }
 
+    /**
+     * identity of the image to load, used to cache its decoded bounds,
+     * see {@link androidrubick.android.bitmap.BitmapMetaCache}
+     *
+     * @return null if the image cannot be identified, default is null
+     * @since 1.0.0
+     */
+    @Nullable
+    public String cacheKey() {
+        return null;
+    }
+
     protected abstract Bitmap load0(@Nullable BitmapFactory.Options options) throws Throwable ;
 }
@@ -3,6 +3,7 @@ package androidrubick.android.bitmap.loader;
 import android.content.Context;
 
 import java.io.File;
+import java.nio.ByteBuffer;
 
 /**
  * {@doc}
@@ -34,4 +35,12 @@ public class BitmapLoaderFactory {
         return new BmDataLoader(data);
     }
 
+    /**
+     * @see BmDataLoader#BmDataLoader(ByteBuffer)
+     * @since 1.0.0
+     */
+    public static BitmapLoader fromData(ByteBuffer buffer) {
+        return new BmDataLoader(buffer);
+    }
+
 }
@@ -5,6 +5,9 @@ import android.graphics.BitmapFactory;
 import android.support.annotation.Nullable;
 
 import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+
+import androidrubick.android.io.ByteBufferInputStream;
 
 /**
  * {@doc}
@@ -16,6 +19,7 @@ import java.io.ByteArrayInputStream;
 public class BmDataLoader extends BaseBitmapLoader implements BitmapLoader {
 
     private byte[] mData;
+    private ByteBuffer mBuffer;
 
     /**
      * @since 1.0.0
@@ -24,12 +28,25 @@ public class BmDataLoader extends BaseBitmapLoader implements BitmapLoader {
         mData = data;
     }
 
+    /**
+     * decode from the buffer directly, such as {@link androidrubick.android.io.IOUtils#map(java.io.File)},
+     * content between position and limit is decoded, the buffer is not copied onto java heap
+     *
+     * @since 1.0.0
+     */
+    public BmDataLoader(ByteBuffer buffer) {
+        mBuffer = buffer;
+    }
+
     /**
      * load {@link Bitmap}
      * @since 1.0.0
      */
     @Override
     protected Bitmap load0(@Nullable BitmapFactory.Options options) throws Throwable {
+        if (null != mBuffer) {
+            return BitmapFactory.decodeStream(new ByteBufferInputStream(mBuffer), null, options);
+        }
         if (null == mData) {
             return null;
         }
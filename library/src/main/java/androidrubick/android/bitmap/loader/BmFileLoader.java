@@ -26,6 +26,19 @@ public class BmFileLoader extends BaseBitmapLoader implements BitmapLoader {
         mFile = file;
     }
 
+    /**
+     * path, length and last modified time of the file
+     *
+     * @since 1.0.0
+     */
+    @Override
+    public String cacheKey() {
+        if (null == mFile) {
+            return null;
+        }
+        return "file:" + mFile.getAbsolutePath() + ":" + mFile.length() + ":" + mFile.lastModified();
+    }
+
     /**
      * load {@link Bitmap}
      * @since 1.0.0
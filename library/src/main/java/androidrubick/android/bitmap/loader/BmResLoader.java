@@ -6,6 +6,8 @@ import android.graphics.BitmapFactory;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 
+import androidrubick.android.app.AppInfos;
+
 /**
  * {@doc}
  * <p>
@@ -26,6 +28,29 @@ public class BmResLoader extends BaseBitmapLoader implements BitmapLoader {
         mRes = res;
     }
 
+    /**
+     * resource id, screen density and app version
+     *
+     * @since 1.0.0
+     */
+    @Override
+    public String cacheKey() {
+        if (null == mContext) {
+            return null;
+        }
+        return "res:" + mRes + ":" + mContext.getResources().getDisplayMetrics().densityDpi
+                + ":" + appVersion();
+    }
+
+    private static int sAppVersion = -2;
+    private static int appVersion() {
+        // 资源ID会随版本变化
+        if (sAppVersion == -2) {
+            sAppVersion = AppInfos.versionCode(-1);
+        }
+        return sAppVersion;
+    }
+
     /**
      * load {@link Bitmap}
      * @since 1.0.0
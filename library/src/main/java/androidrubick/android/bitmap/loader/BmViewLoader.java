@@ -1,12 +1,17 @@
 package androidrubick.android.bitmap.loader;
 
+import android.annotation.TargetApi;
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
 import android.graphics.Canvas;
+import android.graphics.Color;
+import android.os.Build;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 import android.view.View;
 
+import androidrubick.android.bitmap.BitmapPool;
+
 /**
  *
  * load visible rect of target view
@@ -49,13 +54,45 @@ public class BmViewLoader extends BaseBitmapLoader implements BitmapLoader {
             if (options.inSampleSize > 1) {
                 scale = 1f / (float) options.inSampleSize;
             }
+            if (options.inScaled && options.inDensity > 0 && options.inTargetDensity > 0) {
+                scale *= (float) options.inTargetDensity / (float) options.inDensity;
+            }
         }
 
-        Bitmap bm = Bitmap.createBitmap((int) (oW * scale), (int) (oH * scale), config);
+        final int w = (int) (oW * scale);
+        final int h = (int) (oH * scale);
+        Bitmap bm = reuse(options, w, h, config);
+        if (null == bm) {
+            bm = Bitmap.createBitmap(w, h, config);
+        }
         bm.setDensity(mView.getResources().getDisplayMetrics().densityDpi);
         Canvas canvas = new Canvas(bm);
         canvas.scale(scale, scale);
         mView.draw(canvas);
         return bm;
     }
+
+    /**
+     * reuse {@link BitmapFactory.Options#inBitmap} if it has the same size and config,
+     * or get one from {@link BitmapPool#getDefault()}
+     */
+    @TargetApi(Build.VERSION_CODES.HONEYCOMB)
+    private static Bitmap reuse(@Nullable BitmapFactory.Options options, int w, int h, Bitmap.Config config) {
+        if (null != options && null != options.inBitmap) {
+            Bitmap in = options.inBitmap;
+            if (!in.isRecycled() && in.isMutable() && in.getWidth() == w && in.getHeight() == h
+                    && in.getConfig() == config) {
+                in.eraseColor(Color.TRANSPARENT);
+                return in;
+            }
+            // 不能复用的放回池中
+            BitmapPool pool = BitmapPool.getDefault();
+            if (null != pool) {
+                pool.put(in);
+            }
+            options.inBitmap = null;
+        }
+        BitmapPool pool = BitmapPool.getDefault();
+        return null == pool ? null : pool.get(w, h, config);
+    }
 }
@@ -0,0 +1,280 @@
+package androidrubick.android.io;
+
+import android.support.annotation.IntRange;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * size-classed pool of temporary buffers, {@code byte[]}, {@code char[]} and
+ * direct {@link ByteBuffer}, used by I/O copy loops instead of allocating
+ * a new buffer each time.
+ *
+ * <p></p>
+ *
+ * buffers are grouped by power-of-two sizes from {@link #MIN_POOLED_SIZE} to
+ * {@link #MAX_POOLED_SIZE}, a borrowed buffer may be larger than requested;
+ * larger requests are allocated directly and never pooled.
+ *
+ * <p></p>
+ * Created by Yin Yong on 2018/1/18.
+ *
+ * @since 1.0.0
+ */
+public class BufferPool {
+
+    /**
+     * @since 1.0.0
+     */
+    public static final int MIN_POOLED_SIZE = 1 << 9;
+    /**
+     * @since 1.0.0
+     */
+    public static final int MAX_POOLED_SIZE = 1 << 20;
+    /**
+     * default max count of buffers kept for each size and type
+     *
+     * @since 1.0.0
+     */
+    public static final int DEF_MAX_PER_CLASS = 4;
+
+    private static final int MIN_SHIFT = 9;
+    private static final int MAX_SHIFT = 20;
+
+    private static final BufferPool sDefault = new BufferPool(DEF_MAX_PER_CLASS);
+
+    /**
+     * @return the pool used by {@link androidrubick.android.io.op.IOOp}
+     * @since 1.0.0
+     */
+    @NonNull
+    public static BufferPool getDefault() {
+        return sDefault;
+    }
+
+    private final Slots<byte[]> mBytes;
+    private final Slots<char[]> mChars;
+    private final Slots<ByteBuffer> mDirect;
+    private final AtomicLong mHitCount = new AtomicLong();
+    private final AtomicLong mMissCount = new AtomicLong();
+    private final AtomicLong mBytesSaved = new AtomicLong();
+
+    /**
+     * @param maxPerClass max count of buffers kept for each size and type
+     * @since 1.0.0
+     */
+    public BufferPool(@IntRange(from = 1) int maxPerClass) {
+        mBytes = new Slots<>(maxPerClass);
+        mChars = new Slots<>(maxPerClass);
+        mDirect = new Slots<>(maxPerClass);
+    }
+
+    /**
+     * @return a buffer whose length is not less than {@code minSize}
+     * @since 1.0.0
+     */
+    @NonNull
+    public byte[] getBytes(@IntRange(from = 1) int minSize) {
+        int index = classIndexOf(minSize);
+        byte[] buf = mBytes.poll(index);
+        if (record(buf, null == buf ? 0 : buf.length)) {
+            return buf;
+        }
+        return new byte[index < 0 ? minSize : classSizeOf(index)];
+    }
+
+    /**
+     * return the buffer to the pool, the caller must not use it any more
+     *
+     * @since 1.0.0
+     */
+    public void put(@Nullable byte[] buf) {
+        if (null != buf) {
+            mBytes.offer(exactClassIndexOf(buf.length), buf);
+        }
+    }
+
+    /**
+     * @return a buffer whose length is not less than {@code minSize}
+     * @since 1.0.0
+     */
+    @NonNull
+    public char[] getChars(@IntRange(from = 1) int minSize) {
+        int index = classIndexOf(minSize);
+        char[] buf = mChars.poll(index);
+        if (record(buf, null == buf ? 0 : buf.length * 2L)) {
+            return buf;
+        }
+        return new char[index < 0 ? minSize : classSizeOf(index)];
+    }
+
+    /**
+     * return the buffer to the pool, the caller must not use it any more
+     *
+     * @since 1.0.0
+     */
+    public void put(@Nullable char[] buf) {
+        if (null != buf) {
+            mChars.offer(exactClassIndexOf(buf.length), buf);
+        }
+    }
+
+    /**
+     * @return a cleared direct buffer, whose limit is {@code minSize}
+     * @since 1.0.0
+     */
+    @NonNull
+    public ByteBuffer getDirect(@IntRange(from = 1) int minSize) {
+        int index = classIndexOf(minSize);
+        ByteBuffer buf = mDirect.poll(index);
+        if (!record(buf, null == buf ? 0 : buf.capacity())) {
+            buf = ByteBuffer.allocateDirect(index < 0 ? minSize : classSizeOf(index));
+        }
+        buf.clear();
+        buf.limit(minSize);
+        return buf;
+    }
+
+    /**
+     * return the direct buffer to the pool, the caller must not use it any more;
+     * heap buffers are ignored
+     *
+     * @since 1.0.0
+     */
+    public void put(@Nullable ByteBuffer buf) {
+        if (null != buf && buf.isDirect()) {
+            mDirect.offer(exactClassIndexOf(buf.capacity()), buf);
+        }
+    }
+
+    /**
+     * @return count of requests served from the pool
+     * @since 1.0.0
+     */
+    public long hitCount() {
+        return mHitCount.get();
+    }
+
+    /**
+     * @return count of requests which allocate new buffers
+     * @since 1.0.0
+     */
+    public long missCount() {
+        return mMissCount.get();
+    }
+
+    /**
+     * @return [0, 1]
+     * @since 1.0.0
+     */
+    public float hitRate() {
+        long hit = mHitCount.get();
+        long total = hit + mMissCount.get();
+        return total == 0 ? 0 : (float) hit / total;
+    }
+
+    /**
+     * @return total bytes not allocated thanks to the pool
+     * @since 1.0.0
+     */
+    public long bytesSaved() {
+        return mBytesSaved.get();
+    }
+
+    /**
+     * drop all pooled buffers
+     *
+     * @since 1.0.0
+     */
+    public void clear() {
+        mBytes.clear();
+        mChars.clear();
+        mDirect.clear();
+    }
+
+    @Override
+    public String toString() {
+        return "BufferPool{hit=" + hitCount() + ", miss=" + missCount()
+                + ", bytesSaved=" + bytesSaved() + "}";
+    }
+
+    private boolean record(Object buf, long bytes) {
+        if (null == buf) {
+            mMissCount.incrementAndGet();
+            return false;
+        }
+        mHitCount.incrementAndGet();
+        mBytesSaved.addAndGet(bytes);
+        return true;
+    }
+
+    // 向上取整到2的幂，超出范围返回-1；不大于最小分组（包括0）的都属于最小分组
+    private static int classIndexOf(int size) {
+        if (size > MAX_POOLED_SIZE) {
+            return -1;
+        }
+        if (size <= MIN_POOLED_SIZE) {
+            return 0;
+        }
+        return 32 - Integer.numberOfLeadingZeros(size - 1) - MIN_SHIFT;
+    }
+
+    // 只有恰好是某个分组大小的buffer才能放回
+    private static int exactClassIndexOf(int size) {
+        if (size < MIN_POOLED_SIZE || size > MAX_POOLED_SIZE || Integer.bitCount(size) != 1) {
+            return -1;
+        }
+        return classIndexOf(size);
+    }
+
+    private static int classSizeOf(int index) {
+        return 1 << (index + MIN_SHIFT);
+    }
+
+    private static class Slots<T> {
+        private final int mMaxPerClass;
+        private final ArrayDeque<T>[] mClasses;
+
+        @SuppressWarnings("unchecked")
+        Slots(int maxPerClass) {
+            mMaxPerClass = Math.max(1, maxPerClass);
+            mClasses = (ArrayDeque<T>[]) new ArrayDeque<?>[MAX_SHIFT - MIN_SHIFT + 1];
+            for (int i = 0; i < mClasses.length; i++) {
+                mClasses[i] = new ArrayDeque<>(mMaxPerClass);
+            }
+        }
+
+        T poll(int index) {
+            if (index < 0) {
+                return null;
+            }
+            ArrayDeque<T> group = mClasses[index];
+            synchronized (group) {
+                return group.poll();
+            }
+        }
+
+        void offer(int index, T buf) {
+            if (index < 0) {
+                return;
+            }
+            ArrayDeque<T> group = mClasses[index];
+            synchronized (group) {
+                if (group.size() < mMaxPerClass) {
+                    group.push(buf);
+                }
+            }
+        }
+
+        void clear() {
+            for (ArrayDeque<T> group : mClasses) {
+                synchronized (group) {
+                    group.clear();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package androidrubick.android.io;
+
+import android.support.annotation.NonNull;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * {@link InputStream} reading from a {@link ByteBuffer}, such as a
+ * {@link java.nio.MappedByteBuffer}, without copying the whole content onto heap;
+ *
+ * reads from a duplicate, the position of the source buffer is not changed.
+ *
+ * <p></p>
+ * Created by Yin Yong on 2018/1/17.
+ *
+ * @since 1.0.0
+ */
+public class ByteBufferInputStream extends InputStream {
+
+    private final ByteBuffer mBuffer;
+
+    /**
+     * @param buffer content between position and limit is read
+     * @since 1.0.0
+     */
+    public ByteBufferInputStream(@NonNull ByteBuffer buffer) {
+        mBuffer = buffer.duplicate();
+        mBuffer.mark();
+    }
+
+    /**
+     * @return the buffer read from, its position is the current reading position
+     * @since 1.0.0
+     */
+    @NonNull
+    public ByteBuffer buffer() {
+        return mBuffer;
+    }
+
+    @Override
+    public int read() {
+        return mBuffer.hasRemaining() ? mBuffer.get() & 0xFF : -1;
+    }
+
+    @Override
+    public int read(@NonNull byte[] b, int off, int len) {
+        if (len == 0) {
+            return 0;
+        }
+        if (!mBuffer.hasRemaining()) {
+            return -1;
+        }
+        len = Math.min(len, mBuffer.remaining());
+        mBuffer.get(b, off, len);
+        return len;
+    }
+
+    @Override
+    public long skip(long n) {
+        if (n <= 0) {
+            return 0;
+        }
+        int skip = (int) Math.min(n, mBuffer.remaining());
+        mBuffer.position(mBuffer.position() + skip);
+        return skip;
+    }
+
+    @Override
+    public int available() {
+        return mBuffer.remaining();
+    }
+
+    @Override
+    public boolean markSupported() {
+        return true;
+    }
+
+    @Override
+    public synchronized void mark(int readLimit) {
+        mBuffer.mark();
+    }
+
+    @Override
+    public synchronized void reset() {
+        mBuffer.reset();
+    }
+}
@@ -0,0 +1,51 @@
+package androidrubick.android.io;
+
+import android.support.annotation.NonNull;
+
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * {@link OutputStream} writing into a {@link ByteBuffer}, heap or direct;
+ *
+ * writes from the position of the buffer and advances it, like
+ * {@link java.nio.channels.WritableByteChannel#write(ByteBuffer)} does;
+ * writing more than {@link ByteBuffer#remaining()} throws
+ * {@link java.nio.BufferOverflowException}.
+ *
+ * <p></p>
+ * Created by Yin Yong on 2018/1/22.
+ *
+ * @since 1.0.0
+ */
+public class ByteBufferOutputStream extends OutputStream {
+
+    private final ByteBuffer mBuffer;
+
+    /**
+     * @param buffer written between position and limit
+     * @since 1.0.0
+     */
+    public ByteBufferOutputStream(@NonNull ByteBuffer buffer) {
+        mBuffer = buffer;
+    }
+
+    /**
+     * @return the buffer written to, its position is the current writing position
+     * @since 1.0.0
+     */
+    @NonNull
+    public ByteBuffer buffer() {
+        return mBuffer;
+    }
+
+    @Override
+    public void write(int b) {
+        mBuffer.put((byte) b);
+    }
+
+    @Override
+    public void write(@NonNull byte[] b, int off, int len) {
+        mBuffer.put(b, off, len);
+    }
+}
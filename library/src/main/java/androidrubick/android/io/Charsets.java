@@ -0,0 +1,71 @@
+package androidrubick.android.io;
+
+import android.support.annotation.NonNull;
+
+import java.nio.charset.Charset;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * resolved {@link Charset}s, cached by name;
+ *
+ * {@link Charset#forName(String)} only caches the last two charsets looked up,
+ * and {@link java.nio.charset.StandardCharsets} requires API 19.
+ *
+ * <p></p>
+ * Created by Yin Yong on 2018/1/23.
+ *
+ * @since 1.0.0
+ */
+public class Charsets {
+
+    /**
+     * @since 1.0.0
+     */
+    public static final Charset UTF_8 = Charset.forName("UTF-8");
+    /**
+     * @since 1.0.0
+     */
+    public static final Charset US_ASCII = Charset.forName("US-ASCII");
+    /**
+     * @since 1.0.0
+     */
+    public static final Charset ISO_8859_1 = Charset.forName("ISO-8859-1");
+
+    private static final ConcurrentHashMap<String, Charset> sCache = new ConcurrentHashMap<>();
+
+    static {
+        sCache.put(UTF_8.name(), UTF_8);
+        sCache.put(US_ASCII.name(), US_ASCII);
+        sCache.put(ISO_8859_1.name(), ISO_8859_1);
+    }
+
+    private Charsets() {
+    }
+
+    /**
+     * @param name name or alias of the charset
+     * @throws java.nio.charset.IllegalCharsetNameException if the name is illegal
+     * @throws java.nio.charset.UnsupportedCharsetException if the charset is not supported
+     * @since 1.0.0
+     */
+    @NonNull
+    public static Charset forName(@NonNull String name) {
+        Charset charset = sCache.get(name);
+        if (null == charset) {
+            charset = Charset.forName(name);
+            sCache.put(name, charset);
+        }
+        return charset;
+    }
+
+    /**
+     * @return bytes and chars under the limit map to each other directly in the charset:
+     * {@code 0x80} for UTF-8 and US-ASCII, {@code 0x100} for ISO-8859-1, 0 for others
+     */
+    /*package*/ static int directLimitOf(@NonNull Charset charset) {
+        if (UTF_8.equals(charset) || US_ASCII.equals(charset)) {
+            return 0x80;
+        }
+        return ISO_8859_1.equals(charset) ? 0x100 : 0;
+    }
+}
@@ -0,0 +1,255 @@
+package androidrubick.android.io;
+
+import android.support.annotation.IntRange;
+import android.support.annotation.NonNull;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+
+import androidrubick.base.io.IOConstants;
+
+/**
+ * {@link Reader} decoding bytes of an {@link InputStream} by a {@link CharsetDecoder}
+ * directly, over a pooled byte buffer, instead of {@link java.io.InputStreamReader};
+ *
+ * for UTF-8, US-ASCII and ISO-8859-1, runs of bytes that map to chars directly
+ * (ASCII bytes, or all bytes for ISO-8859-1) are copied without the decoder.
+ * a {@link ByteBufferInputStream}, such as a mapped file, is decoded from its buffer
+ * directly, without copying into the byte buffer.
+ *
+ * <p></p>
+ *
+ * malformed input and unmappable chars are replaced, as {@link java.io.InputStreamReader} does.
+ *
+ * <p></p>
+ * Created by Yin Yong on 2018/1/23.
+ *
+ * @since 1.0.0
+ */
+public class DecodingReader extends Reader {
+
+    // 至少容纳一个完整的多字节序列
+    private static final int MIN_BUFFER_SIZE = 64;
+
+    private final InputStream mIn;
+    private final CharsetDecoder mDecoder;
+    private final int mDirectLimit;
+    // null if decoding a ByteBufferInputStream directly
+    private byte[] mBytes;
+    // bytes between position and limit are not decoded yet
+    private final ByteBuffer mBuffer;
+    private boolean mEof;
+    // decoder has been called with endOfInput
+    private boolean mEnded;
+    private boolean mFlushed;
+    // low surrogate of a pair, which the last read had no room for
+    private char mLeftover;
+    private boolean mHasLeftover;
+    private boolean mClosed;
+
+    /**
+     * @since 1.0.0
+     */
+    public DecodingReader(@NonNull InputStream in, @NonNull Charset charset) {
+        this(in, charset, IOConstants.DEF_BUFFER_SIZE);
+    }
+
+    /**
+     * @param bufferSize size of the byte buffer
+     * @since 1.0.0
+     */
+    public DecodingReader(@NonNull InputStream in, @NonNull Charset charset, @IntRange(from = 1) int bufferSize) {
+        super(in);
+        mIn = in;
+        mDecoder = charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        mDirectLimit = Charsets.directLimitOf(charset);
+        if (in instanceof ByteBufferInputStream) {
+            // 所有内容已在buffer中
+            mBuffer = ((ByteBufferInputStream) in).buffer();
+            mEof = true;
+        } else {
+            mBytes = BufferPool.getDefault().getBytes(Math.max(MIN_BUFFER_SIZE, bufferSize));
+            mBuffer = ByteBuffer.wrap(mBytes);
+            mBuffer.limit(0);
+        }
+    }
+
+    @Override
+    public int read(@NonNull char[] cbuf, int off, int len) throws IOException {
+        synchronized (lock) {
+            ensureOpen();
+            if (len == 0) {
+                return 0;
+            }
+            CharBuffer out = CharBuffer.wrap(cbuf, off, len);
+            if (mHasLeftover) {
+                mHasLeftover = false;
+                out.put(mLeftover);
+            }
+            if (mFlushed) {
+                return out.position() == off ? -1 : out.position() - off;
+            }
+            while (true) {
+                if (!decode(out)) {
+                    if (out.position() == off) {
+                        // 只剩一个字符的空间，放不下一个代理对
+                        readPair(out);
+                    }
+                    return out.position() - off;
+                }
+                if (mEof) {
+                    // 可能所有字节都已直接转换，解码器尚未结束
+                    if (!mEnded) {
+                        mEnded = true;
+                        if (mDecoder.decode(mBuffer, out, true).isOverflow()) {
+                            return out.position() - off;
+                        }
+                    }
+                    if (mDecoder.flush(out).isOverflow()) {
+                        return out.position() - off;
+                    }
+                    mFlushed = true;
+                    return out.position() == off ? -1 : out.position() - off;
+                }
+                if (out.position() > off) {
+                    // 不阻塞等待更多输入
+                    return out.position() - off;
+                }
+                fill();
+            }
+        }
+    }
+
+    @Override
+    public boolean ready() throws IOException {
+        synchronized (lock) {
+            ensureOpen();
+            return mHasLeftover || mBuffer.hasRemaining() || (!mEof && mIn.available() > 0);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (lock) {
+            if (mClosed) {
+                return;
+            }
+            mClosed = true;
+            BufferPool.getDefault().put(mBytes);
+            mBytes = null;
+            mIn.close();
+        }
+    }
+
+    private void ensureOpen() throws IOException {
+        if (mClosed) {
+            throw new IOException("Reader is closed");
+        }
+    }
+
+    /**
+     * @return false if {@code out} is full, true if the buffered bytes are used up,
+     * except an incomplete sequence at the end
+     */
+    private boolean decode(CharBuffer out) throws IOException {
+        final int limit = mBuffer.limit();
+        while (true) {
+            if (mDirectLimit > 0) {
+                copyDirect(out);
+            }
+            if (!out.hasRemaining()) {
+                return false;
+            }
+            if (!mBuffer.hasRemaining()) {
+                return true;
+            }
+            // 解码一段不能直接转换的字节，包括其后的一个字节，以结束其中可能不完整的序列
+            int stop = limit;
+            if (mDirectLimit > 0) {
+                stop = mBuffer.position();
+                while (stop < limit && (mBuffer.get(stop) & 0xFF) >= mDirectLimit) {
+                    stop++;
+                }
+                stop = Math.min(limit, stop + 1);
+            }
+            mEnded |= mEof && stop == limit;
+            CoderResult result;
+            mBuffer.limit(stop);
+            try {
+                result = mDecoder.decode(mBuffer, out, mEnded);
+            } finally {
+                mBuffer.limit(limit);
+            }
+            if (result.isError()) {
+                result.throwException();
+            }
+            if (result.isOverflow()) {
+                return false;
+            }
+            if (mBuffer.position() < stop) {
+                // 不完整的序列，等待更多输入
+                return true;
+            }
+        }
+    }
+
+    private void readPair(CharBuffer out) throws IOException {
+        CharBuffer pair = CharBuffer.allocate(2);
+        decode(pair);
+        pair.flip();
+        out.put(pair.get());
+        if (pair.hasRemaining()) {
+            mLeftover = pair.get();
+            mHasLeftover = true;
+        }
+    }
+
+    private void copyDirect(CharBuffer out) {
+        final int n = Math.min(mBuffer.remaining(), out.remaining());
+        final int pos = mBuffer.position();
+        final char[] dst = out.array();
+        final int dp = out.arrayOffset() + out.position();
+        int i = 0;
+        if (mBuffer.hasArray()) {
+            final byte[] src = mBuffer.array();
+            final int sp = mBuffer.arrayOffset() + pos;
+            for (; i < n; i++) {
+                int b = src[sp + i] & 0xFF;
+                if (b >= mDirectLimit) {
+                    break;
+                }
+                dst[dp + i] = (char) b;
+            }
+        } else {
+            for (; i < n; i++) {
+                int b = mBuffer.get(pos + i) & 0xFF;
+                if (b >= mDirectLimit) {
+                    break;
+                }
+                dst[dp + i] = (char) b;
+            }
+        }
+        mBuffer.position(pos + i);
+        out.position(out.position() + i);
+    }
+
+    private void fill() throws IOException {
+        mBuffer.compact();
+        int n = mIn.read(mBytes, mBuffer.position(), mBuffer.remaining());
+        if (n < 0) {
+            mEof = true;
+        } else {
+            mBuffer.position(mBuffer.position() + n);
+        }
+        mBuffer.flip();
+    }
+}
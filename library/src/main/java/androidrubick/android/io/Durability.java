@@ -0,0 +1,39 @@
+package androidrubick.android.io;
+
+/**
+ * policy of how written files are made durable when closed
+ *
+ * <p></p>
+ * Created by Yin Yong on 2018/1/21.
+ *
+ * @since 1.0.0
+ */
+public enum Durability {
+    /**
+     * just close, data is written to disk later by the system;
+     * suitable for caches and temp files
+     *
+     * @since 1.0.0
+     */
+    NONE,
+    /**
+     * {@link java.io.FileDescriptor#sync()} before close, the caller waits until
+     * data reaches the disk
+     *
+     * @since 1.0.0
+     */
+    SYNC_ON_CLOSE,
+    /**
+     * close by {@link GroupCommit}, which syncs files closed within a short window
+     * together, then syncs their directories once;
+     *
+     * {@link androidrubick.android.io.op.IOOp} waits for the sync, so
+     * {@link androidrubick.android.io.op.IOCallback#onComplete} means the data is on disk,
+     * and a failed sync is passed to {@link androidrubick.android.io.op.IOCallback#onFailed};
+     * {@link IOUtils#close(java.io.Closeable, Durability)} does not wait, and does not
+     * report failures, like the other policies
+     *
+     * @since 1.0.0
+     */
+    GROUP_COMMIT
+}
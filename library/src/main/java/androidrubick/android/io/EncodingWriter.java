@@ -0,0 +1,197 @@
+package androidrubick.android.io;
+
+import android.support.annotation.IntRange;
+import android.support.annotation.NonNull;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+
+import androidrubick.base.io.IOConstants;
+
+/**
+ * {@link Writer} encoding chars to an {@link OutputStream} by a {@link CharsetEncoder}
+ * directly, over a pooled byte buffer, instead of {@link java.io.OutputStreamWriter};
+ *
+ * for UTF-8, US-ASCII and ISO-8859-1, runs of chars that map to bytes directly
+ * (ASCII chars, or chars under {@code 0x100} for ISO-8859-1) are copied without the encoder.
+ *
+ * <p></p>
+ *
+ * encoded bytes are buffered until the buffer is full, {@link #flush()} or {@link #close()};
+ * malformed input and unmappable chars are replaced, as {@link java.io.OutputStreamWriter} does.
+ *
+ * <p></p>
+ * Created by Yin Yong on 2018/1/23.
+ *
+ * @since 1.0.0
+ */
+public class EncodingWriter extends Writer {
+
+    // 至少容纳一个完整的多字节序列
+    private static final int MIN_BUFFER_SIZE = 64;
+
+    private final OutputStream mOut;
+    private final CharsetEncoder mEncoder;
+    private final int mDirectLimit;
+    private byte[] mBytes;
+    // encoded bytes between 0 and position
+    private final ByteBuffer mBuffer;
+    // high surrogate at the end of last write
+    private char mLeftover;
+    private boolean mHasLeftover;
+    private boolean mClosed;
+
+    /**
+     * @since 1.0.0
+     */
+    public EncodingWriter(@NonNull OutputStream out, @NonNull Charset charset) {
+        this(out, charset, IOConstants.DEF_BUFFER_SIZE);
+    }
+
+    /**
+     * @param bufferSize size of the byte buffer
+     * @since 1.0.0
+     */
+    public EncodingWriter(@NonNull OutputStream out, @NonNull Charset charset, @IntRange(from = 1) int bufferSize) {
+        super(out);
+        mOut = out;
+        mEncoder = charset.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        mDirectLimit = Charsets.directLimitOf(charset);
+        mBytes = BufferPool.getDefault().getBytes(Math.max(MIN_BUFFER_SIZE, bufferSize));
+        mBuffer = ByteBuffer.wrap(mBytes);
+    }
+
+    @Override
+    public void write(int c) throws IOException {
+        write(new char[]{(char) c}, 0, 1);
+    }
+
+    @Override
+    public void write(@NonNull char[] cbuf, int off, int len) throws IOException {
+        synchronized (lock) {
+            ensureOpen();
+            final int end = off + len;
+            // 上次末尾的高代理项，可能又留下一个高代理项
+            while (mHasLeftover && off < end) {
+                mHasLeftover = false;
+                encode(CharBuffer.wrap(new char[]{mLeftover, cbuf[off++]}), false);
+            }
+            while (off < end) {
+                if (mDirectLimit > 0 && (off = copyDirect(cbuf, off, end)) == end) {
+                    break;
+                }
+                // 编码一段不能直接转换的字符，包括其后的一个字符，以结束其中可能不成对的代理项
+                int stop = end;
+                if (mDirectLimit > 0) {
+                    stop = off;
+                    while (stop < end && cbuf[stop] >= mDirectLimit) {
+                        stop++;
+                    }
+                    stop = Math.min(end, stop + 1);
+                }
+                encode(CharBuffer.wrap(cbuf, off, stop - off), false);
+                off = stop;
+            }
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        synchronized (lock) {
+            ensureOpen();
+            drain();
+            mOut.flush();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (lock) {
+            if (mClosed) {
+                return;
+            }
+            try {
+                // 结束编码，不成对的代理项被替换
+                encode(mHasLeftover ? CharBuffer.wrap(new char[]{mLeftover}) : CharBuffer.allocate(0), true);
+                mHasLeftover = false;
+                while (mEncoder.flush(mBuffer).isOverflow()) {
+                    drain();
+                }
+                drain();
+            } finally {
+                mClosed = true;
+                BufferPool.getDefault().put(mBytes);
+                mBytes = null;
+                mOut.close();
+            }
+        }
+    }
+
+    private void ensureOpen() throws IOException {
+        if (mClosed) {
+            throw new IOException("Writer is closed");
+        }
+    }
+
+    /**
+     * @return index of the first char not copied
+     */
+    private int copyDirect(char[] cbuf, int off, int end) throws IOException {
+        while (off < end) {
+            if (!mBuffer.hasRemaining()) {
+                drain();
+            }
+            final int n = Math.min(end - off, mBuffer.remaining());
+            final int dp = mBuffer.position();
+            int i = 0;
+            for (; i < n; i++) {
+                char c = cbuf[off + i];
+                if (c >= mDirectLimit) {
+                    break;
+                }
+                mBytes[dp + i] = (byte) c;
+            }
+            mBuffer.position(dp + i);
+            off += i;
+            if (i < n) {
+                break;
+            }
+        }
+        return off;
+    }
+
+    private void encode(CharBuffer in, boolean endOfInput) throws IOException {
+        while (true) {
+            CoderResult result = mEncoder.encode(in, mBuffer, endOfInput);
+            if (result.isOverflow()) {
+                drain();
+                continue;
+            }
+            if (result.isError()) {
+                result.throwException();
+            }
+            break;
+        }
+        if (in.hasRemaining()) {
+            // 末尾的高代理项，与下一次写入的第一个字符一起编码
+            mLeftover = in.get();
+            mHasLeftover = true;
+        }
+    }
+
+    private void drain() throws IOException {
+        if (mBuffer.position() > 0) {
+            mOut.write(mBytes, 0, mBuffer.position());
+            mBuffer.clear();
+        }
+    }
+}
@@ -0,0 +1,217 @@
+package androidrubick.android.io;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.system.Os;
+import android.system.OsConstants;
+
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import androidrubick.android.async.ARExecutors;
+import androidrubick.base.logging.ARLogger;
+
+/**
+ * background committer of {@link Durability#GROUP_COMMIT};
+ *
+ * file output streams submitted within {@link #WINDOW_MILLIS} are synced and closed
+ * together in a background thread, then each of their directories is synced once
+ * (since {@link Build.VERSION_CODES#LOLLIPOP}), so that many small files do not cost
+ * a full flush each.
+ *
+ * <p></p>
+ *
+ * {@link #commit(FileOutputStream, File)} waits for the batch and throws if the file
+ * is not synced; {@link #submit(FileOutputStream, File)} returns at once, and failures
+ * are only logged.
+ *
+ * <p></p>
+ * Created by Yin Yong on 2018/1/21.
+ *
+ * @since 1.0.0
+ */
+public class GroupCommit {
+
+    /**
+     * time to wait for more files before a commit
+     *
+     * @since 1.0.0
+     */
+    public static final long WINDOW_MILLIS = 20;
+
+    private static final ScheduledThreadPoolExecutor SCHEDULER = ARExecutors.newScheduler("GroupCommit");
+    private static final Object sLock = new Object();
+    private static ArrayList<Pending> sPending = new ArrayList<>();
+    private static long sSubmitted;
+    private static long sCommitted;
+
+    private GroupCommit() {
+    }
+
+    /**
+     * sync and close the stream in background; the caller must not use it any more;
+     * the data may not be on disk when this method returns, and failures are only logged
+     *
+     * @param out  stream to commit, flushed
+     * @param file the file written by {@code out}, whose directory will be synced;
+     *             null if unknown
+     * @since 1.0.0
+     */
+    public static void submit(@NonNull FileOutputStream out, @Nullable File file) {
+        enqueue(out, file);
+    }
+
+    /**
+     * sync and close the stream together with the others submitted within the window,
+     * and wait until they are synced; the caller must not use the stream any more
+     *
+     * @param out  stream to commit, flushed
+     * @param file the file written by {@code out}, whose directory will be synced;
+     *             null if unknown
+     * @throws IOException if syncing or closing the stream, or syncing its directory fails;
+     *                     {@link InterruptedIOException} if interrupted while waiting
+     * @since 1.0.0
+     */
+    public static void commit(@NonNull FileOutputStream out, @Nullable File file) throws IOException {
+        final Pending pending = enqueue(out, file);
+        synchronized (sLock) {
+            while (!pending.mDone) {
+                try {
+                    sLock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("interrupted while waiting for group commit");
+                }
+            }
+        }
+        if (null != pending.mError) {
+            throw pending.mError;
+        }
+    }
+
+    private static Pending enqueue(FileOutputStream out, File file) {
+        Pending pending = new Pending(out, file);
+        synchronized (sLock) {
+            sPending.add(pending);
+            sSubmitted++;
+            if (sPending.size() == 1) {
+                SCHEDULER.schedule(COMMIT, WINDOW_MILLIS, TimeUnit.MILLISECONDS);
+            }
+        }
+        return pending;
+    }
+
+    /**
+     * wait until all streams submitted before are committed
+     *
+     * @since 1.0.0
+     */
+    public static void await() throws InterruptedException {
+        synchronized (sLock) {
+            final long target = sSubmitted;
+            while (sCommitted < target) {
+                sLock.wait();
+            }
+        }
+    }
+
+    private static final Runnable COMMIT = new Runnable() {
+        @Override
+        public void run() {
+            ArrayList<Pending> batch;
+            synchronized (sLock) {
+                batch = sPending;
+                sPending = new ArrayList<>();
+            }
+            LinkedHashMap<File, ArrayList<Pending>> dirs = new LinkedHashMap<>();
+            for (Pending pending : batch) {
+                try {
+                    pending.mOut.getFD().sync();
+                } catch (IOException e) {
+                    pending.fail(e);
+                }
+                try {
+                    pending.mOut.close();
+                } catch (IOException e) {
+                    pending.fail(e);
+                }
+                if (null != pending.mFile) {
+                    File dir = pending.mFile.getAbsoluteFile().getParentFile();
+                    if (null != dir) {
+                        ArrayList<Pending> inDir = dirs.get(dir);
+                        if (null == inDir) {
+                            dirs.put(dir, inDir = new ArrayList<>(2));
+                        }
+                        inDir.add(pending);
+                    }
+                }
+            }
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+                for (Map.Entry<File, ArrayList<Pending>> entry : dirs.entrySet()) {
+                    IOException e = syncDir(entry.getKey());
+                    if (null != e) {
+                        for (Pending pending : entry.getValue()) {
+                            pending.fail(e);
+                        }
+                    }
+                }
+            }
+            synchronized (sLock) {
+                for (Pending pending : batch) {
+                    pending.mDone = true;
+                }
+                sCommitted += batch.size();
+                sLock.notifyAll();
+            }
+        }
+    };
+
+    /**
+     * @return null if synced
+     */
+    @TargetApi(Build.VERSION_CODES.LOLLIPOP)
+    private static IOException syncDir(File dir) {
+        try {
+            FileDescriptor fd = Os.open(dir.getPath(), OsConstants.O_RDONLY, 0);
+            try {
+                Os.fsync(fd);
+            } finally {
+                Os.close(fd);
+            }
+            return null;
+        } catch (Exception e) {
+            return e instanceof IOException ? (IOException) e : new IOException("cannot sync " + dir, e);
+        }
+    }
+
+    private static class Pending {
+        final FileOutputStream mOut;
+        final File mFile;
+        // guarded by sLock
+        boolean mDone;
+        // 第一个异常，在mDone之前写入
+        IOException mError;
+
+        Pending(FileOutputStream out, File file) {
+            mOut = out;
+            mFile = file;
+        }
+
+        void fail(IOException e) {
+            ARLogger.warning("GroupCommit sync error: " + e);
+            if (null == mError) {
+                mError = e;
+            }
+        }
+    }
+}
@@ -1,9 +1,17 @@
 package androidrubick.android.io;
 
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.os.StatFs;
+
 import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.Flushable;
 import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
 
 import static androidrubick.base.utils.Objects.getAs;
 
@@ -24,12 +32,24 @@ public class IOUtils {
     // >>>>>>>>>>>>>>>>>>>>>>
     // TODO close
     /**
-     * 关闭指定的可关闭的I/O
+     * 关闭指定的可关闭的I/O；如果是{@link FileOutputStream}，关闭前同步到磁盘，
+     * 即{@link Durability#SYNC_ON_CLOSE}
      * @param close 一个实现了Closeable的I/O对象
      *
      * @since 1.0
      */
     public static void close(Closeable close) {
+        close(close, Durability.SYNC_ON_CLOSE);
+    }
+
+    /**
+     * 关闭指定的可关闭的I/O，如果是{@link FileOutputStream}，按照指定的持久化策略关闭
+     * @param close 一个实现了Closeable的I/O对象
+     * @param durability 持久化策略
+     *
+     * @since 1.0.0
+     */
+    public static void close(Closeable close, Durability durability) {
         if (null == close) {
             return ;
         }
@@ -38,13 +58,70 @@ public class IOUtils {
                 getAs(close, Flushable.class).flush();
             }
         } catch (IOException ignore) { }
-        try {
-            if (close instanceof FileOutputStream) {
-                getAs(close, FileOutputStream.class).getFD().sync();
+        if (close instanceof FileOutputStream) {
+            if (durability == Durability.GROUP_COMMIT) {
+                GroupCommit.submit(getAs(close, FileOutputStream.class), null);
+                return ;
             }
-        } catch (IOException ignore) { }
+            try {
+                if (durability == Durability.SYNC_ON_CLOSE) {
+                    getAs(close, FileOutputStream.class).getFD().sync();
+                }
+            } catch (IOException ignore) { }
+        }
         try {
             close.close();
         } catch (IOException ignore) { }
     }
+
+    // >>>>>>>>>>>>>>>>>>>>>>
+    // TODO map
+    /**
+     * 以只读方式将整个文件映射到内存，内容不会拷贝到Java堆中；
+     * 映射在文件关闭后依然有效，直到返回的buffer被回收
+     *
+     * @param file 需要映射的文件
+     * @return 映射得到的buffer
+     * @throws IOException 文件不存在，或者无法映射
+     *
+     * @since 1.0.0
+     */
+    public static MappedByteBuffer map(File file) throws IOException {
+        FileInputStream ins = new FileInputStream(file);
+        try {
+            FileChannel channel = ins.getChannel();
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } finally {
+            close(ins);
+        }
+    }
+
+    // >>>>>>>>>>>>>>>>>>>>>>
+    // TODO block size
+    /**
+     * 获取文件所在文件系统的块大小
+     *
+     * @param file 文件或目录，可以不存在，此时使用已存在的上级目录
+     * @return 块大小（字节），无法获取时返回0
+     *
+     * @since 1.0.0
+     */
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN_MR2)
+    @SuppressWarnings("deprecation")
+    public static long blockSizeOf(File file) {
+        File target = null == file ? null : file.getAbsoluteFile();
+        while (null != target && !target.exists()) {
+            target = target.getParentFile();
+        }
+        if (null == target) {
+            return 0;
+        }
+        try {
+            StatFs statFs = new StatFs(target.getPath());
+            return Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2
+                    ? statFs.getBlockSizeLong() : statFs.getBlockSize();
+        } catch (Throwable e) {
+            return 0;
+        }
+    }
 }
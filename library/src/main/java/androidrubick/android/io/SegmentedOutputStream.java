@@ -0,0 +1,113 @@
+package androidrubick.android.io;
+
+import android.support.annotation.NonNull;
+
+import java.io.OutputStream;
+import java.util.ArrayList;
+
+import androidrubick.base.io.IOConstants;
+
+/**
+ * in-memory {@link OutputStream}, which stores data in a list of segments
+ * instead of growing one array by copying.
+ *
+ * <p></p>
+ *
+ * if the expected size is given and exactly that many bytes are written,
+ * {@link #toByteArray()} returns the backing array without copying;
+ * otherwise segments are concatenated once.
+ *
+ * <p></p>
+ * Created by Yin Yong on 2018/1/19.
+ *
+ * @since 1.0.0
+ */
+public class SegmentedOutputStream extends OutputStream {
+
+    private static final int MAX_SEGMENT_SIZE = 1 << 20;
+    private static final int MAX_ARRAY_SIZE = Integer.MAX_VALUE - 8;
+
+    private final ArrayList<byte[]> mSegments = new ArrayList<>();
+    private byte[] mCurrent;
+    private int mPos;
+    private long mCount;
+
+    /**
+     * @since 1.0.0
+     */
+    public SegmentedOutputStream() {
+        this(-1);
+    }
+
+    /**
+     * @param expectedSize expected count of bytes, negative if unknown
+     * @since 1.0.0
+     */
+    public SegmentedOutputStream(long expectedSize) {
+        mCurrent = new byte[expectedSize < 0 ? IOConstants.DEF_BUFFER_SIZE
+                : (int) Math.min(expectedSize, MAX_ARRAY_SIZE)];
+    }
+
+    @Override
+    public void write(int b) {
+        if (mPos == mCurrent.length) {
+            nextSegment();
+        }
+        mCurrent[mPos++] = (byte) b;
+        mCount++;
+    }
+
+    @Override
+    public void write(@NonNull byte[] b, int off, int len) {
+        while (len > 0) {
+            if (mPos == mCurrent.length) {
+                nextSegment();
+            }
+            int n = Math.min(len, mCurrent.length - mPos);
+            System.arraycopy(b, off, mCurrent, mPos, n);
+            mPos += n;
+            mCount += n;
+            off += n;
+            len -= n;
+        }
+    }
+
+    /**
+     * @return count of bytes written
+     * @since 1.0.0
+     */
+    public long size() {
+        return mCount;
+    }
+
+    /**
+     * @return all bytes written; may be the backing array, if it is exactly filled
+     * @since 1.0.0
+     */
+    @NonNull
+    public byte[] toByteArray() {
+        if (mSegments.isEmpty() && mPos == mCurrent.length) {
+            return mCurrent;
+        }
+        if (mCount > MAX_ARRAY_SIZE) {
+            throw new OutOfMemoryError("SegmentedOutputStream too large: " + mCount);
+        }
+        byte[] result = new byte[(int) mCount];
+        int pos = 0;
+        for (byte[] segment : mSegments) {
+            System.arraycopy(segment, 0, result, pos, segment.length);
+            pos += segment.length;
+        }
+        System.arraycopy(mCurrent, 0, result, pos, mPos);
+        return result;
+    }
+
+    // 新分段的大小为已写入的总量，使总容量成倍增长
+    private void nextSegment() {
+        if (mCurrent.length > 0) {
+            mSegments.add(mCurrent);
+        }
+        mCurrent = new byte[(int) Math.min(MAX_SEGMENT_SIZE, Math.max(IOConstants.DEF_BUFFER_SIZE, mCount))];
+        mPos = 0;
+    }
+}
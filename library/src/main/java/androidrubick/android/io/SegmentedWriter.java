@@ -0,0 +1,134 @@
+package androidrubick.android.io;
+
+import android.support.annotation.NonNull;
+
+import java.io.Writer;
+import java.util.ArrayList;
+
+import androidrubick.base.io.IOConstants;
+
+/**
+ * in-memory {@link Writer}, which stores chars in a list of segments
+ * instead of growing one array by copying, as {@link java.io.StringWriter} does.
+ *
+ * <p></p>
+ *
+ * if the expected length is given and exactly that many chars are written,
+ * {@link #toString()} creates the string from the backing array directly;
+ * otherwise segments are concatenated once.
+ *
+ * <p></p>
+ * Created by Yin Yong on 2018/1/19.
+ *
+ * @since 1.0.0
+ */
+public class SegmentedWriter extends Writer {
+
+    private static final int MAX_SEGMENT_SIZE = 1 << 19;
+    private static final int MAX_ARRAY_SIZE = Integer.MAX_VALUE - 8;
+
+    private final ArrayList<char[]> mSegments = new ArrayList<>();
+    private char[] mCurrent;
+    private int mPos;
+    private long mCount;
+
+    /**
+     * @since 1.0.0
+     */
+    public SegmentedWriter() {
+        this(-1);
+    }
+
+    /**
+     * @param expectedLength expected count of chars, negative if unknown
+     * @since 1.0.0
+     */
+    public SegmentedWriter(long expectedLength) {
+        mCurrent = new char[expectedLength < 0 ? IOConstants.DEF_BUFFER_SIZE
+                : (int) Math.min(expectedLength, MAX_ARRAY_SIZE)];
+    }
+
+    @Override
+    public void write(int c) {
+        if (mPos == mCurrent.length) {
+            nextSegment();
+        }
+        mCurrent[mPos++] = (char) c;
+        mCount++;
+    }
+
+    @Override
+    public void write(@NonNull char[] cbuf, int off, int len) {
+        while (len > 0) {
+            if (mPos == mCurrent.length) {
+                nextSegment();
+            }
+            int n = Math.min(len, mCurrent.length - mPos);
+            System.arraycopy(cbuf, off, mCurrent, mPos, n);
+            mPos += n;
+            mCount += n;
+            off += n;
+            len -= n;
+        }
+    }
+
+    @Override
+    public void write(@NonNull String str, int off, int len) {
+        while (len > 0) {
+            if (mPos == mCurrent.length) {
+                nextSegment();
+            }
+            int n = Math.min(len, mCurrent.length - mPos);
+            str.getChars(off, off + n, mCurrent, mPos);
+            mPos += n;
+            mCount += n;
+            off += n;
+            len -= n;
+        }
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public void close() {
+    }
+
+    /**
+     * @return count of chars written
+     * @since 1.0.0
+     */
+    public long size() {
+        return mCount;
+    }
+
+    /**
+     * @return all chars written
+     * @since 1.0.0
+     */
+    @Override
+    public String toString() {
+        if (mSegments.isEmpty()) {
+            return new String(mCurrent, 0, mPos);
+        }
+        if (mCount > MAX_ARRAY_SIZE) {
+            throw new OutOfMemoryError("SegmentedWriter too large: " + mCount);
+        }
+        StringBuilder sb = new StringBuilder((int) mCount);
+        for (char[] segment : mSegments) {
+            sb.append(segment);
+        }
+        sb.append(mCurrent, 0, mPos);
+        return sb.toString();
+    }
+
+    // 新分段的大小为已写入的总量，使总容量成倍增长
+    private void nextSegment() {
+        if (mCurrent.length > 0) {
+            mSegments.add(mCurrent);
+        }
+        mCurrent = new char[(int) Math.min(MAX_SEGMENT_SIZE, Math.max(IOConstants.DEF_BUFFER_SIZE, mCount))];
+        mPos = 0;
+    }
+}
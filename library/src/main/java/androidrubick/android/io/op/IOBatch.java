@@ -0,0 +1,368 @@
+package androidrubick.android.io.op;
+
+import android.support.annotation.IntRange;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import androidrubick.android.async.ARExecutors;
+import androidrubick.android.async.CancelToken;
+import androidrubick.android.async.MainLooperProxy;
+import androidrubick.android.io.Durability;
+import androidrubick.android.io.FileIOCallback;
+import androidrubick.base.logging.ARLogger;
+
+/**
+ * batch of file operations (copy, move, delete), run by a bounded worker pool;
+ * {@link FileIOCallback#onProgress} is called once for each operation, and
+ * {@link FileIOCallback#onComplete()} once after all of them.
+ *
+ * <p></p>
+ *
+ * operations are not ordered among each other, except the start order,
+ * see {@link Order}; each operation runs at most once.
+ *
+ * <p></p>
+ *
+ * each operation is a task of a shared worker pool, a batch has at most
+ * {@link #parallelism(int)} tasks queued or running at the same time, and queues
+ * the next operation when one is done; so that batches share the pool fairly,
+ * and no worker is held by a batch waiting for its other operations.
+ *
+ * <p></p>
+ * Created by Yin Yong on 2018/1/20.
+ *
+ * @since 1.0.0
+ */
+public class IOBatch {
+
+    /**
+     * start order of operations
+     *
+     * @since 1.0.0
+     */
+    public enum Order {
+        /**
+         * in the order they are added
+         *
+         * @since 1.0.0
+         */
+        ADDED,
+        /**
+         * smaller source files first, so that most files are done early
+         *
+         * @since 1.0.0
+         */
+        SMALL_FIRST,
+        /**
+         * grouped by the directory of the source file
+         *
+         * @since 1.0.0
+         */
+        LOCALITY
+    }
+
+    /**
+     * default count of operations running at the same time of a batch
+     *
+     * @since 1.0.0
+     */
+    public static final int DEF_PARALLELISM = Math.min(4, ARExecutors.cpuCount());
+
+    private static final Executor EXECUTOR = ARExecutors.newBoundedPool("IOBatch",
+            ARExecutors.cpuCount(), ARExecutors.cpuCount(), 64, ARExecutors.fallbackToIO());
+
+    private static final int COPY = 1;
+    private static final int MOVE = 2;
+    private static final int DELETE = 3;
+
+    private final ArrayList<Entry> mEntries = new ArrayList<>();
+    private Order mOrder = Order.ADDED;
+    private int mParallelism = DEF_PARALLELISM;
+    private FileIOCallback mCallback;
+    private CancelToken mCancelToken;
+    private volatile boolean mRecycleable;
+
+    /*package*/ IOBatch() {
+    }
+
+    /**
+     * copy {@code src} to {@code dst}, parent directories of {@code dst} are created if needed;
+     * an existing {@code dst} is overwritten
+     *
+     * @since 1.0.0
+     */
+    public IOBatch copy(@NonNull File src, @NonNull File dst) {
+        mEntries.add(new Entry(COPY, src, dst));
+        return this;
+    }
+
+    /**
+     * move {@code src} to {@code dst}; rename first, copy and delete if rename fails;
+     * an existing {@code dst} is overwritten in both ways, except on file systems whose
+     * rename fails if {@code dst} exists, where it is overwritten by the copy
+     *
+     * @since 1.0.0
+     */
+    public IOBatch move(@NonNull File src, @NonNull File dst) {
+        mEntries.add(new Entry(MOVE, src, dst));
+        return this;
+    }
+
+    /**
+     * delete the file
+     *
+     * @since 1.0.0
+     */
+    public IOBatch delete(@NonNull File file) {
+        mEntries.add(new Entry(DELETE, file, null));
+        return this;
+    }
+
+    /**
+     * default value is {@link Order#ADDED}
+     *
+     * @since 1.0.0
+     */
+    public IOBatch order(@NonNull Order order) {
+        mOrder = order;
+        return this;
+    }
+
+    /**
+     * default value is {@link #DEF_PARALLELISM}
+     *
+     * @param parallelism count of operations running at the same time
+     * @since 1.0.0
+     */
+    public IOBatch parallelism(@IntRange(from = 1) int parallelism) {
+        mParallelism = Math.max(1, parallelism);
+        return this;
+    }
+
+    /**
+     * @param cb progress of each operation, and completion of the batch
+     * @since 1.0.0
+     */
+    public IOBatch callback(@Nullable FileIOCallback cb) {
+        mCallback = cb;
+        return this;
+    }
+
+    /**
+     * operations not started yet are skipped once the token is cancelled,
+     * {@link FileIOCallback#onComplete()} is still called
+     *
+     * @since 1.0.0
+     */
+    public IOBatch cancelToken(@Nullable CancelToken token) {
+        mCancelToken = token;
+        return this;
+    }
+
+    /**
+     * run the batch and wait until all operations are done;
+     * the callback is called in worker threads;
+     *
+     * must not be called from the callback of a batch, or any other task of the worker pool,
+     * which would hold a worker while waiting for it
+     *
+     * @return whether all operations succeed
+     * @since 1.0.0
+     */
+    public boolean sync() {
+        if (mRecycleable) {
+            return false;
+        }
+        mRecycleable = true;
+        final CountDownLatch latch = new CountDownLatch(1);
+        Run run = start(mCallback, latch);
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+        return run.mAllSuccess.get();
+    }
+
+    /**
+     * run the batch in worker threads, the callback is called in main thread
+     *
+     * @since 1.0.0
+     */
+    public void async() {
+        if (mRecycleable) {
+            return;
+        }
+        mRecycleable = true;
+        start(null == mCallback ? null : MainLooperProxy.<FileIOCallback, FileIOCallback>wrap(mCallback), null);
+    }
+
+    private Run start(FileIOCallback cb, CountDownLatch latch) {
+        ArrayList<Entry> entries = new ArrayList<>(mEntries);
+        sort(entries, mOrder);
+        int lanes = Math.max(1, Math.min(mParallelism, entries.size()));
+        Run run = new Run(entries, lanes, cb, mCancelToken, latch);
+        for (int i = 0; i < lanes; i++) {
+            EXECUTOR.execute(run);
+        }
+        return run;
+    }
+
+    private static void sort(ArrayList<Entry> entries, Order order) {
+        switch (order) {
+            case SMALL_FIRST:
+                for (Entry entry : entries) {
+                    entry.mSortLength = entry.mSrc.length();
+                }
+                Collections.sort(entries, new Comparator<Entry>() {
+                    @Override
+                    public int compare(Entry o1, Entry o2) {
+                        return o1.mSortLength < o2.mSortLength ? -1 : (o1.mSortLength == o2.mSortLength ? 0 : 1);
+                    }
+                });
+                break;
+            case LOCALITY:
+                Collections.sort(entries, new Comparator<Entry>() {
+                    @Override
+                    public int compare(Entry o1, Entry o2) {
+                        return String.valueOf(o1.mSrc.getAbsoluteFile().getParent())
+                                .compareTo(String.valueOf(o2.mSrc.getAbsoluteFile().getParent()));
+                    }
+                });
+                break;
+            default:
+                break;
+        }
+    }
+
+    private static boolean perform(Entry entry) {
+        switch (entry.mType) {
+            case COPY:
+                return copyFile(entry.mSrc, entry.mDst, Durability.NONE);
+            case MOVE:
+                if (!entry.mSrc.isFile()) {
+                    return false;
+                }
+                prepareParent(entry.mDst);
+                if (entry.mSrc.renameTo(entry.mDst)) {
+                    return true;
+                }
+                // 删除源文件前，确保复制的文件已写入磁盘
+                return copyFile(entry.mSrc, entry.mDst, Durability.SYNC_ON_CLOSE) && entry.mSrc.delete();
+            case DELETE:
+                return entry.mSrc.delete() || !entry.mSrc.exists();
+            default:
+                return false;
+        }
+    }
+
+    private static boolean copyFile(File src, File dst, Durability durability) {
+        if (!src.isFile()) {
+            return false;
+        }
+        prepareParent(dst);
+        return IOOp.from(src).durability(durability).to(dst);
+    }
+
+    private static void prepareParent(File file) {
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (null != parent && !parent.exists()) {
+            parent.mkdirs();
+        }
+    }
+
+    private static class Entry {
+        final int mType;
+        final File mSrc;
+        final File mDst;
+        long mSortLength;
+
+        Entry(int type, File src, File dst) {
+            mType = type;
+            mSrc = src;
+            mDst = dst;
+        }
+    }
+
+    /**
+     * task of a batch, each execution performs the next entry, then queues itself again
+     * for the entry after; the count of queued or running executions, lanes, never exceeds
+     * the parallelism of the batch
+     */
+    private static class Run implements Runnable {
+        final ConcurrentLinkedQueue<Entry> mQueue;
+        final AtomicInteger mLanes;
+        final AtomicBoolean mAllSuccess = new AtomicBoolean(true);
+        final FileIOCallback mCallback;
+        final CancelToken mCancelToken;
+        final CountDownLatch mLatch;
+
+        Run(ArrayList<Entry> entries, int lanes, FileIOCallback cb, CancelToken token, CountDownLatch latch) {
+            mQueue = new ConcurrentLinkedQueue<>(entries);
+            mLanes = new AtomicInteger(lanes);
+            mCallback = cb;
+            mCancelToken = token;
+            mLatch = latch;
+        }
+
+        @Override
+        public void run() {
+            Entry entry = CancelToken.isCancelled(mCancelToken) ? null : mQueue.poll();
+            if (null == entry) {
+                finishLane();
+                return;
+            }
+            boolean success;
+            try {
+                success = perform(entry);
+            } catch (Throwable e) {
+                ARLogger.warning("IOBatch error: " + e);
+                success = false;
+            }
+            if (!success) {
+                mAllSuccess.set(false);
+            }
+            try {
+                if (null != mCallback) {
+                    mCallback.onProgress(entry.mSrc, success);
+                }
+            } finally {
+                if (mQueue.isEmpty()) {
+                    finishLane();
+                } else {
+                    // 排到其他批次的任务之后，不占用worker
+                    EXECUTOR.execute(this);
+                }
+            }
+        }
+
+        private void finishLane() {
+            if (mLanes.decrementAndGet() == 0) {
+                if (!mQueue.isEmpty()) {
+                    // 被取消
+                    mAllSuccess.set(false);
+                }
+                try {
+                    if (null != mCallback) {
+                        mCallback.onComplete();
+                    }
+                } finally {
+                    if (null != mLatch) {
+                        mLatch.countDown();
+                    }
+                }
+            }
+        }
+    }
+}
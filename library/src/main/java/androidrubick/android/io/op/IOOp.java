@@ -8,10 +8,13 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.Reader;
 import java.io.StringReader;
-import java.io.StringWriter;
 import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
 
-import androidrubick.base.io.PredefinedBAOS;
+import androidrubick.android.io.SegmentedOutputStream;
+import androidrubick.android.io.SegmentedWriter;
 
 /**
  * <p>
@@ -40,12 +43,26 @@ public class IOOp extends IOOpBase<IOOp> {
         return new IOOp(FILE, file);
     }
 
+    /**
+     * read the file through a {@link java.nio.MappedByteBuffer}, so that
+     * big files need not be copied onto java heap when written to a
+     * {@link java.io.FileOutputStream}
+     *
+     * @see #mapThreshold(long)
+     * @since 1.0.0
+     */
+    @NonNull
+    public static IOOp fromMapped(File file) {
+        return from(file).mapThreshold(0);
+    }
+
     /**
      * @since 1.0
      */
     @NonNull
     public static IOOp fromContent(String content) {
-        return from(null == content ? null : new StringReader(content));
+        return from(null == content ? null : new StringReader(content))
+                .sourceLength(null == content ? -1 : content.length());
     }
 
     /**
@@ -53,7 +70,8 @@ public class IOOp extends IOOpBase<IOOp> {
      */
     @NonNull
     public static IOOp from(byte[] data) {
-        return from(null == data ? null : new ByteArrayInputStream(data));
+        return from(null == data ? null : new ByteArrayInputStream(data))
+                .sourceLength(null == data ? -1 : data.length);
     }
 
     /**
@@ -72,6 +90,40 @@ public class IOOp extends IOOpBase<IOOp> {
         return new IOOp(C_STREAM, reader);
     }
 
+    /**
+     * read the channel, such as a {@link java.nio.channels.FileChannel}, a socket or a pipe,
+     * in blocking mode; between channels, data is copied through a pooled direct buffer,
+     * or by {@link java.nio.channels.FileChannel#transferTo} for file channels
+     *
+     * @since 1.0.0
+     */
+    @NonNull
+    public static IOOp from(ReadableByteChannel channel) {
+        return new IOOp(CHANNEL, channel);
+    }
+
+    /**
+     * read the content between position and limit of the buffer, heap or direct,
+     * such as a {@link java.nio.MappedByteBuffer}; the position of the buffer is not changed
+     *
+     * @since 1.0.0
+     */
+    @NonNull
+    public static IOOp from(ByteBuffer buffer) {
+        return new IOOp(BUFFER, buffer)
+                .sourceLength(null == buffer ? -1 : buffer.remaining());
+    }
+
+    /**
+     * create a batch of file operations, such as copy, move and delete
+     *
+     * @since 1.0.0
+     */
+    @NonNull
+    public static IOBatch batch() {
+        return new IOBatch();
+    }
+
     /**
      * do IO op in a new sub threads, callback in ui thread
      *
@@ -90,6 +142,21 @@ public class IOOp extends IOOpBase<IOOp> {
         return checkDoOp(FILE, file);
     }
 
+    /**
+     * resume a partial copy: skip as many bytes of src as the file already has,
+     * and append the rest to the file;
+     *
+     * only works for byte sources without {@link #stage(IOStage) stages}, since the offset
+     * is counted in bytes of the output; otherwise the op fails with
+     * {@link IllegalArgumentException}
+     *
+     * @since 1.0.0
+     */
+    public boolean resumeTo(final File file) {
+        resume = true;
+        return offset(file.length()).append(true).to(file);
+    }
+
     /**
      * transform src to {@link OutputStream}
      *
@@ -108,6 +175,26 @@ public class IOOp extends IOOpBase<IOOp> {
         return checkDoOp(C_STREAM, writer);
     }
 
+    /**
+     * transform src to {@link WritableByteChannel}, in blocking mode
+     *
+     * @since 1.0.0
+     */
+    public boolean to(WritableByteChannel channel) {
+        return checkDoOp(CHANNEL, channel);
+    }
+
+    /**
+     * transform src into the buffer, from its position; the position is advanced
+     * by the count written; fails with {@link java.nio.BufferOverflowException}
+     * if the remaining of the buffer is not enough
+     *
+     * @since 1.0.0
+     */
+    public boolean to(ByteBuffer buffer) {
+        return checkDoOp(BUFFER, buffer);
+    }
+
     /**
      * only support sync
      *
@@ -115,9 +202,9 @@ public class IOOp extends IOOpBase<IOOp> {
      * @since 1.0.0
      */
     public byte[] asRaw() {
-        PredefinedBAOS baos = new PredefinedBAOS();
-        to(baos);
-        return baos.toByteArray();
+        SegmentedOutputStream out = new SegmentedOutputStream(expectedLength(B_STREAM));
+        to(out);
+        return out.toByteArray();
     }
 
     /**
@@ -127,18 +214,42 @@ public class IOOp extends IOOpBase<IOOp> {
      * @since 1.0.0
      */
     public String asString() {
-        StringWriter writer = new StringWriter();
+        SegmentedWriter writer = new SegmentedWriter(expectedLength(C_STREAM));
         to(writer);
         return writer.toString();
     }
 
+    /**
+     * @return length to copy from the source within the range, if known and in the same unit
+     * (byte or char) as output; otherwise -1
+     */
+    private long expectedLength(int toType) {
+        if (!stages.isEmpty()) {
+            // stage会改变数据长度
+            return -1;
+        }
+        long length;
+        if (mFromType == FILE) {
+            length = toType == B_STREAM && null != mFromObj ? ((File) mFromObj).length() : -1;
+        } else {
+            // 除字符流外，其他源都以字节计
+            length = (mFromType == C_STREAM) == (toType == C_STREAM) ? sourceLength : -1;
+        }
+        if (length < 0) {
+            return -1;
+        }
+        // 只复制range指定的部分
+        length = Math.max(0, length - rangeOffset);
+        return rangeLength < 0 ? length : Math.min(length, rangeLength);
+    }
+
     private boolean checkDoOp(int toType, Object toObj) {
         if (mRecycleable) {
             return false;
         }
         mRecycleable = true;
 
-        return new IOOpImpl(closeIn, closeOut, bufferSize, bufferType, charset, cb)
+        return new IOOpImpl(this)
                 .sync(mFromType, mFromObj, toType, toObj);
     }
 
@@ -148,6 +259,11 @@ public class IOOp extends IOOpBase<IOOp> {
 
     private volatile boolean mRecycleable;
 
+    private IOOp sourceLength(long length) {
+        this.sourceLength = length;
+        return this;
+    }
+
     private IOOp(int fromType, Object fromObj) {
         this.mFromType = fromType;
         this.mFromObj = fromObj;
@@ -5,6 +5,8 @@ import android.support.annotation.NonNull;
 import java.io.File;
 import java.io.OutputStream;
 import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
 
 /**
  * {@doc}
@@ -34,6 +36,22 @@ public class IOOpAsync extends IOOpBase<IOOpAsync> {
         checkDoOp(FILE, file);
     }
 
+    /**
+     * resume a partial copy: skip as many bytes of src as the file already has,
+     * and append the rest to the file;
+     *
+     * only works for byte sources without {@link #stage(IOStage) stages}, since the offset
+     * is counted in bytes of the output; otherwise the op fails with
+     * {@link IllegalArgumentException}
+     *
+     * @see IOOp#resumeTo(File)
+     * @since 1.0.0
+     */
+    public void resumeTo(final File file) {
+        resume = true;
+        offset(file.length()).append(true).to(file);
+    }
+
     /**
      * transform src to {@link OutputStream}
      *
@@ -52,13 +70,32 @@ public class IOOpAsync extends IOOpBase<IOOpAsync> {
         checkDoOp(C_STREAM, writer);
     }
 
+    /**
+     * transform src to {@link WritableByteChannel}, in blocking mode
+     *
+     * @since 1.0.0
+     */
+    public void to(WritableByteChannel channel) {
+        checkDoOp(CHANNEL, channel);
+    }
+
+    /**
+     * transform src into the buffer
+     *
+     * @see IOOp#to(ByteBuffer)
+     * @since 1.0.0
+     */
+    public void to(ByteBuffer buffer) {
+        checkDoOp(BUFFER, buffer);
+    }
+
     private void checkDoOp(int toType, Object toObj) {
         if (mRecycleable) {
             return ;
         }
         mRecycleable = true;
 
-        new IOOpImpl(closeIn, closeOut, bufferSize, bufferType, charset, cb)
+        new IOOpImpl(this)
                 .async(mFromType, mFromObj, toType, toObj);
     }
 }
@@ -4,8 +4,12 @@ import android.support.annotation.IntRange;
 import android.support.annotation.NonNull;
 
 import java.nio.charset.Charset;
+import java.util.ArrayList;
 
+import androidrubick.android.async.CancelToken;
 import androidrubick.android.io.BufferType;
+import androidrubick.android.io.Charsets;
+import androidrubick.android.io.Durability;
 import androidrubick.base.io.IOConstants;
 import androidrubick.base.utils.Exceptions;
 
@@ -26,7 +30,7 @@ import androidrubick.base.utils.Exceptions;
     /**
      * default value is {@code true}
      *
-     * @param val whether close input stream / reader
+     * @param val whether close input stream / reader / channel
      * @since 1.0
      */
     public final Self closeIn(boolean val) {
@@ -37,7 +41,7 @@ import androidrubick.base.utils.Exceptions;
     /**
      * default value is {@code true}
      *
-     * @param val whether close output stream / writer
+     * @param val whether close output stream / writer / channel
      * @since 1.0
      */
     public final Self closeOut(boolean val) {
@@ -89,26 +93,220 @@ import androidrubick.base.utils.Exceptions;
      */
     public final Self charset(String charset) {
         try {
-            Charset.forName(charset);
-            this.charset = charset;
+            this.charset = Charsets.forName(charset);
         } catch (Exception ignore) {
             throw Exceptions.asRuntime(ignore);
         }
         return self();
     }
 
+    /**
+     * char set of char-related operations;
+     *
+     * default charset is {@link IOConstants#DEF_CHARSET_NAME}
+     *
+     * @see Charsets
+     * @since 1.0.0
+     */
+    public final Self charset(@NonNull Charset charset) {
+        this.charset = charset;
+        return self();
+    }
+
+    /**
+     * the operation stops with a {@link java.util.concurrent.CancellationException}
+     * passed to {@link IOCallback#onFailed}, once the token is cancelled
+     *
+     * @param token null-ok
+     * @see androidrubick.android.async.AsyncOp#cancelToken()
+     * @since 1.0.0
+     */
+    public final Self cancelToken(CancelToken token) {
+        this.cancelToken = token;
+        return self();
+    }
+
+    /**
+     * file sources whose length is not less than {@code threshold} are read through
+     * a {@link java.nio.MappedByteBuffer}, instead of a {@link java.io.FileInputStream};
+     *
+     * by default, file sources are never mapped
+     *
+     * @param threshold bytes, 0 to always map
+     * @see androidrubick.android.io.IOUtils#map(java.io.File)
+     * @since 1.0.0
+     */
+    public final Self mapThreshold(@IntRange(from = 0) long threshold) {
+        this.mapThreshold = Math.max(0, threshold);
+        return self();
+    }
+
+    /**
+     * size buffers by the source instead of the fixed {@link #bufferSize(int)}:
+     * if the length of the source is known (file, byte array, string), the buffer
+     * is sized to hold the whole source, up to a limit; otherwise the buffer starts
+     * from {@link #bufferSize(int)}, and doubles while the stream keeps filling it.
+     * buffers larger than a block of the file system are rounded to whole blocks.
+     *
+     * <p></p>
+     *
+     * default value is {@code false}
+     *
+     * @since 1.0.0
+     */
+    public final Self adaptiveBufferSize(boolean val) {
+        this.adaptiveBufferSize = val;
+        return self();
+    }
+
+    /**
+     * limit how often {@link IOCallback#onProgress} is called; a progress is reported
+     * once any of the given granularities is reached, and the last progress is always
+     * reported before {@link IOCallback#onComplete} or {@link IOCallback#onFailed};
+     * {@code readThisTime} of a report covers all reads since the last report.
+     *
+     * <p></p>
+     *
+     * by default, progress is reported after every read
+     *
+     * @param bytes   report every {@code bytes} bytes/chars, 0 to ignore
+     * @param millis  report every {@code millis} milliseconds, 0 to ignore
+     * @param percent report every {@code percent} percent of the length to copy, that is the
+     *                source length within {@link #range(long, long)}; only works if the length
+     *                is known (file, byte array, string, or a range length), 0 to ignore
+     * @since 1.0.0
+     */
+    public final Self progressGranularity(@IntRange(from = 0) long bytes,
+                                          @IntRange(from = 0) long millis,
+                                          @IntRange(from = 0, to = 100) int percent) {
+        this.progressBytes = Math.max(0, bytes);
+        this.progressMillis = Math.max(0, millis);
+        this.progressPercent = Math.max(0, Math.min(100, percent));
+        return self();
+    }
+
+    /**
+     * how the output file is made durable when closed, only works for
+     * {@link java.io.File}, {@link java.io.FileOutputStream} and
+     * {@link java.nio.channels.FileChannel} outputs closed by the op;
+     * a {@link java.nio.channels.FileChannel} is forced on close for both policies other than
+     * {@link Durability#NONE};
+     *
+     * default value is {@link Durability#NONE}, fit for caches; use
+     * {@link Durability#SYNC_ON_CLOSE} or {@link Durability#GROUP_COMMIT} for important data
+     *
+     * @since 1.0.0
+     */
+    public final Self durability(@NonNull Durability durability) {
+        this.durability = durability;
+        return self();
+    }
+
+    /**
+     * for {@link java.io.File} output, write to a temp file in the same directory first,
+     * and rename it to the target file only if the op succeeds, or delete it if fails;
+     * so that readers never see a partially written file; the temp file is renamed only
+     * after it is closed, and synced if {@link #durability(Durability)} is not
+     * {@link Durability#NONE}.
+     *
+     * <p></p>
+     *
+     * default value is {@code false}
+     *
+     * @since 1.0.0
+     */
+    public final Self atomic(boolean val) {
+        this.atomic = val;
+        return self();
+    }
+
+    /**
+     * add a transform stage of the byte output, the data written flows through
+     * stages in the order they are added, within the single copy loop;
+     * stages are finished when the op ends, even if {@link #closeOut(boolean)} is false
+     *
+     * @see IOStages
+     * @since 1.0.0
+     */
+    public final Self stage(@NonNull IOStage stage) {
+        this.stages.add(stage);
+        return self();
+    }
+
+    /**
+     * copy only part of the source; counted in the unit of the copy, bytes if both
+     * the source and the output are byte-based, chars otherwise;
+     * {@code readTotal} passed to {@link IOCallback} includes {@code offset}, so
+     * {@code readTotal} of {@link IOCallback#onFailed} can be used to resume the copy,
+     * see {@link #append(boolean)}
+     *
+     * @param offset count to skip from the current position of the source;
+     *               if the source is shorter, the op fails with {@link java.io.EOFException}
+     * @param length max count to copy, negative to copy to the end
+     * @since 1.0.0
+     */
+    public final Self range(@IntRange(from = 0) long offset, long length) {
+        this.rangeOffset = Math.max(0, offset);
+        this.rangeLength = length < 0 ? -1 : length;
+        return self();
+    }
+
+    /**
+     * same as {@link #range(long, long) range(offset, -1)}
+     *
+     * @since 1.0.0
+     */
+    public final Self offset(@IntRange(from = 0) long offset) {
+        return range(offset, -1);
+    }
+
+    /**
+     * for {@link java.io.File} output, append to the end of the file instead of
+     * overwriting it; {@link #atomic(boolean)} is ignored when appending.
+     *
+     * <p></p>
+     *
+     * default value is {@code false}
+     *
+     * @since 1.0.0
+     */
+    public final Self append(boolean val) {
+        this.append = val;
+        return self();
+    }
+
     static final int FILE     = 1;
     // byte stream
     static final int B_STREAM = 2;
     // char stream
     static final int C_STREAM = 3;
+    // ReadableByteChannel / WritableByteChannel
+    static final int CHANNEL  = 4;
+    // ByteBuffer, heap or direct
+    static final int BUFFER   = 5;
 
     int bufferSize = IOConstants.DEF_BUFFER_SIZE;
     BufferType bufferType = BufferType.Byte;
-    String charset = IOConstants.DEF_CHARSET_NAME;
+    Charset charset = Charsets.forName(IOConstants.DEF_CHARSET_NAME);
     boolean closeIn = true;
     boolean closeOut = true;
     IOCallback cb;
+    CancelToken cancelToken;
+    long mapThreshold = Long.MAX_VALUE;
+    boolean adaptiveBufferSize;
+    // 源的长度（字节或字符），未知时为-1
+    long sourceLength = -1;
+    long progressBytes;
+    long progressMillis;
+    int progressPercent;
+    Durability durability = Durability.NONE;
+    boolean atomic;
+    final ArrayList<IOStage> stages = new ArrayList<>(2);
+    long rangeOffset;
+    long rangeLength = -1;
+    boolean append;
+    // resumeTo，偏移量是已写入的字节数
+    boolean resume;
 
     IOOpBase() {
 
@@ -121,5 +319,19 @@ import androidrubick.base.utils.Exceptions;
         closeIn = raw.closeIn;
         closeOut = raw.closeOut;
         cb = raw.cb;
+        cancelToken = raw.cancelToken;
+        mapThreshold = raw.mapThreshold;
+        adaptiveBufferSize = raw.adaptiveBufferSize;
+        sourceLength = raw.sourceLength;
+        progressBytes = raw.progressBytes;
+        progressMillis = raw.progressMillis;
+        progressPercent = raw.progressPercent;
+        durability = raw.durability;
+        atomic = raw.atomic;
+        stages.addAll(raw.stages);
+        rangeOffset = raw.rangeOffset;
+        rangeLength = raw.rangeLength;
+        append = raw.append;
+        resume = raw.resume;
     }
 }
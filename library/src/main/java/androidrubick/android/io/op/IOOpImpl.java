@@ -1,26 +1,46 @@
 package androidrubick.android.io.op;
 
+import android.os.SystemClock;
 import android.support.annotation.IntRange;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 
 import java.io.Closeable;
+import java.io.EOFException;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
+import java.io.Flushable;
+import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.io.OutputStream;
-import java.io.OutputStreamWriter;
 import java.io.Reader;
 import java.io.Writer;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.concurrent.CancellationException;
 
 import androidrubick.android.async.ARSchedulers;
+import androidrubick.android.async.CancelToken;
+import androidrubick.android.async.MainLooperProxy;
+import androidrubick.android.io.BufferPool;
 import androidrubick.android.io.BufferType;
+import androidrubick.android.io.ByteBufferInputStream;
+import androidrubick.android.io.ByteBufferOutputStream;
+import androidrubick.android.io.DecodingReader;
+import androidrubick.android.io.Durability;
+import androidrubick.android.io.EncodingWriter;
+import androidrubick.android.io.GroupCommit;
 import androidrubick.android.io.IOUtils;
 
 import static androidrubick.android.async.MainLooperProxy.isProxy;
-import static androidrubick.android.async.MainLooperProxy.wrap;
 
 /**
  * <p></p>
@@ -29,33 +49,96 @@ import static androidrubick.android.async.MainLooperProxy.wrap;
  * @since 1.0.0
  */
 /*package*/ class IOOpImpl {
+    // 文件之间传输时，每次传输（回调进度）的最小字节数
+    private static final long MIN_TRANSFER_CHUNK = 512 * 1024;
+    // 自适应buffer的范围
+    private static final int MIN_ADAPTIVE_SIZE = 512;
+    private static final int MAX_ADAPTIVE_SIZE = 256 * 1024;
+
     private boolean closeIn;
     private boolean closeOut;
     @IntRange(from = 1)
     private final int bufferSize;
     private final BufferType bufferType;
-    private final String charset;
+    private final Charset charset;
     @Nullable
     private IOCallback cb;
+    @Nullable
+    private final CancelToken cancelToken;
+    private final long mapThreshold;
+    private final boolean adaptiveBufferSize;
+    private long sourceLength;
+    private long blockSize;
+    private final long progressBytes;
+    private final long progressMillis;
+    private final int progressPercent;
+    // 尚未回调的进度
+    private long pendingProgress;
+    private long lastProgressTotal;
+    private long lastProgressTime;
+    private final Durability durability;
+    // 输出的文件
+    private File targetFile;
+    private FileOutputStream fileOut;
+    private final ArrayList<IOStage> stages;
+    private final long rangeOffset;
+    private final long rangeLength;
+    private final boolean append;
+    private final boolean resume;
+    // 有stage时，原始的输出，和最外层的stage
+    private OutputStream stageBase;
+    private OutputStream stagedOut;
+    private final boolean atomic;
+    // 原子模式下，实际写入的临时文件，成功后重命名为targetFile
+    private File tempFile;
+    // 结束stage、同步或关闭输出时的第一个异常
+    private Throwable closeError;
 
-    IOOpImpl(boolean closeIn, boolean closeOut,
-             @IntRange(from = 1) int bufferSize,
-             @NonNull BufferType bufferType,
-             String charset,
-             @Nullable IOCallback cb) {
-        this.closeIn = closeIn;
-        this.closeOut = closeOut;
-        this.bufferSize = bufferSize;
-        this.bufferType = bufferType;
-        this.charset = charset;
-        this.cb = cb;
+    IOOpImpl(@NonNull IOOpBase<?> settings) {
+        this.closeIn = settings.closeIn;
+        this.closeOut = settings.closeOut;
+        this.bufferSize = settings.bufferSize;
+        this.bufferType = settings.bufferType;
+        this.charset = settings.charset;
+        this.cb = settings.cb;
+        this.cancelToken = settings.cancelToken;
+        this.mapThreshold = settings.mapThreshold;
+        this.adaptiveBufferSize = settings.adaptiveBufferSize;
+        this.sourceLength = settings.sourceLength;
+        this.progressBytes = settings.progressBytes;
+        this.progressMillis = settings.progressMillis;
+        this.progressPercent = settings.progressPercent;
+        this.durability = settings.durability;
+        this.atomic = settings.atomic;
+        this.stages = new ArrayList<>(settings.stages);
+        this.rangeOffset = settings.rangeOffset;
+        this.rangeLength = settings.rangeLength;
+        this.append = settings.append;
+        this.resume = settings.resume;
+        // 从offset开始计算进度
+        this.lastProgressTotal = settings.rangeOffset;
     }
 
     boolean sync(int fromType, Object fromObj, int toType, Object toObj) {
+        if (resume && (fromType == IOOpBase.C_STREAM || !stages.isEmpty())) {
+            // 文件长度是字节数，与字符数或stage之前的字节数不对应
+            release(fromType, fromObj, toType, toObj);
+            performError(new IllegalArgumentException("resumeTo only works with byte source without stages"),
+                    0, BufferType.Byte);
+            return false;
+        }
         Throwable err = null;
         if (fromType == IOOpBase.FILE) {
             try {
-                InputStream ins = new FileInputStream((File) fromObj);
+                File file = (File) fromObj;
+                sourceLength = file.length();
+                if (adaptiveBufferSize) {
+                    blockSize = IOUtils.blockSizeOf(file);
+                }
+                // 文件到文件，使用transferTo更合适，不映射
+                InputStream ins = toType != IOOpBase.FILE && file.length() >= mapThreshold
+                        ? new ByteBufferInputStream(IOUtils.map(file))
+                        : new FileInputStream(file);
                 fromType = IOOpBase.B_STREAM;
                 fromObj = ins;
                 closeIn = true;
@@ -65,7 +148,16 @@ import static androidrubick.android.async.MainLooperProxy.wrap;
         }
         if (toType == IOOpBase.FILE) {
             try {
-                OutputStream out = new FileOutputStream((File) toObj);
+                if (adaptiveBufferSize && blockSize <= 0) {
+                    blockSize = IOUtils.blockSizeOf((File) toObj);
+                }
+                targetFile = (File) toObj;
+                // 追加时，不能使用临时文件
+                if (atomic && !append) {
+                    tempFile = File.createTempFile("." + targetFile.getName() + ".", ".tmp",
+                            targetFile.getAbsoluteFile().getParentFile());
+                }
+                OutputStream out = new FileOutputStream(null != tempFile ? tempFile : targetFile, append);
                 toType = IOOpBase.B_STREAM;
                 toObj = out;
                 closeOut = true;
@@ -74,6 +166,14 @@ import static androidrubick.android.async.MainLooperProxy.wrap;
             }
         }
 
+        if (toObj instanceof FileOutputStream) {
+            fileOut = (FileOutputStream) toObj;
+        }
+
+        if (null == err && CancelToken.isCancelled(cancelToken)) {
+            err = new CancellationException("cancelled");
+        }
+
         // 如果没有异常，进行IO传输
         if (null == err) {
             return trans(fromType, fromObj, toType, toObj);
@@ -87,7 +187,8 @@ import static androidrubick.android.async.MainLooperProxy.wrap;
 
     void async(final int fromType, final Object fromObj, final int toType, final Object toObj) {
         if (!isProxy(this.cb)) {
-            this.cb = null != cb ? (IOCallback) wrap(cb) : cb;
+            // 回调合并到每帧一次主线程消息中分发，onProgress合并为一次
+            this.cb = MainLooperProxy.<IOCallback, IOCallback>wrapBatched(cb, true, "onProgress");
         }
         ARSchedulers.io(new Runnable() {
             @Override
@@ -98,12 +199,12 @@ import static androidrubick.android.async.MainLooperProxy.wrap;
     }
 
     private void release(int fromType, Object fromObj, int toType, Object toObj) {
-        if (toType == IOOpBase.B_STREAM || toType == IOOpBase.C_STREAM) {
-            if (closeOut && toObj instanceof Closeable) {
-                IOUtils.close((Closeable) toObj);
+        if (toType == IOOpBase.B_STREAM || toType == IOOpBase.C_STREAM || toType == IOOpBase.CHANNEL) {
+            if (toObj instanceof Closeable) {
+                closeOutput((Closeable) toObj);
             }
         }
-        if (fromType == IOOpBase.B_STREAM || fromType == IOOpBase.C_STREAM) {
+        if (fromType == IOOpBase.B_STREAM || fromType == IOOpBase.C_STREAM || fromType == IOOpBase.CHANNEL) {
             if (closeIn && fromObj instanceof Closeable) {
                 IOUtils.close((Closeable) fromObj);
             }
@@ -111,6 +212,29 @@ import static androidrubick.android.async.MainLooperProxy.wrap;
     }
 
     private boolean trans(int fromType, Object fromObj, int toType, Object toObj) {
+        if (!stages.isEmpty() || fromType == IOOpBase.C_STREAM || toType == IOOpBase.C_STREAM) {
+            // stage和字符转换只支持流，将channel和buffer适配为流
+            if (fromType == IOOpBase.CHANNEL || fromType == IOOpBase.BUFFER) {
+                fromObj = asInputStream(fromObj);
+                fromType = IOOpBase.B_STREAM;
+            }
+            if (toType == IOOpBase.CHANNEL || toType == IOOpBase.BUFFER) {
+                toObj = asOutputStream(toObj);
+                toType = IOOpBase.B_STREAM;
+            }
+        }
+        if (!stages.isEmpty()) {
+            try {
+                if (toType != IOOpBase.B_STREAM) {
+                    throw new IllegalArgumentException("IOStage only works with byte output");
+                }
+                toObj = applyStages((OutputStream) toObj);
+            } catch (Throwable e) {
+                release(fromType, fromObj, toType, toObj);
+                performError(e, 0, BufferType.Byte);
+                return false;
+            }
+        }
         switch ((fromType * 10) + toType) {
             case IOOpBase.B_STREAM * 10 + IOOpBase.B_STREAM:
                 return i2o((InputStream) fromObj, (OutputStream) toObj);
@@ -121,6 +245,10 @@ import static androidrubick.android.async.MainLooperProxy.wrap;
             case IOOpBase.C_STREAM * 10 + IOOpBase.C_STREAM:
                 return r2w((Reader) fromObj, (Writer) toObj);
             default: {
+                if (isByteType(fromType) && isByteType(toType)) {
+                    // 至少一端为channel或buffer
+                    return c2c(fromObj, toObj);
+                }
                 release(fromType, fromObj, toType, toObj);
                 performError(new IllegalArgumentException("Invalid fromType or toType"), 0, BufferType.Byte);
                 return false;
@@ -130,37 +258,44 @@ import static androidrubick.android.async.MainLooperProxy.wrap;
 
     private boolean r2w(Reader reader, Writer writer) {
         long readTotal = 0;
+        int size = firstBufferSize((int) bufferType.toChars(bufferSize));
+        char[] buf = BufferPool.getDefault().getChars(size);
         try {
-            char[] buf = new char[(int) bufferType.toChars(bufferSize)];
+            skip(reader);
+            readTotal = rangeOffset;
             int len;
-            while (-1 != (len = reader.read(buf))) {
+            int want;
+            while ((want = (int) Math.min(size, rangeRemaining(readTotal))) > 0
+                    && -1 != (len = reader.read(buf, 0, want))) {
+                CancelToken.throwIfCancelled(cancelToken);
                 writer.write(buf, 0, len);
                 readTotal += len;
                 performProgress(len, readTotal, BufferType.Char);
+                if (len == size && (size = nextBufferSize(size)) > buf.length) {
+                    BufferPool.getDefault().put(buf);
+                    buf = BufferPool.getDefault().getChars(size);
+                }
             }
         } catch (Throwable e) {
             performError(e, readTotal, BufferType.Char);
             return false;
         } finally {
-            if (closeOut) {
-                IOUtils.close(writer);
-            }
+            BufferPool.getDefault().put(buf);
+            closeOutput(writer);
             if (closeIn) {
                 IOUtils.close(reader);
             }
         }
-        performComplete(readTotal, BufferType.Char);
-        return true;
+        return performComplete(readTotal, BufferType.Char);
     }
 
     private boolean i2w(InputStream inputStream, Writer writer) {
-        InputStreamReader reader;
+        DecodingReader reader;
         try {
-            reader = new InputStreamReader(inputStream, charset);
+            reader = new DecodingReader(inputStream, charset,
+                    firstBufferSize((int) bufferType.toBytes(bufferSize)));
         } catch (Throwable e) {
-            if (closeOut) {
-                IOUtils.close(writer);
-            }
+            closeOutput(writer);
             if (closeIn) {
                 IOUtils.close(inputStream);
             }
@@ -171,13 +306,11 @@ import static androidrubick.android.async.MainLooperProxy.wrap;
     }
 
     private boolean r2o(Reader reader, OutputStream outputStream) {
-        OutputStreamWriter writer;
+        EncodingWriter writer;
         try {
-            writer = new OutputStreamWriter(outputStream, charset);
+            writer = new EncodingWriter(outputStream, charset, (int) bufferType.toBytes(bufferSize));
         } catch (Throwable e) {
-            if (closeOut) {
-                IOUtils.close(outputStream);
-            }
+            closeOutput(outputStream);
             if (closeIn) {
                 IOUtils.close(reader);
             }
@@ -188,45 +321,569 @@ import static androidrubick.android.async.MainLooperProxy.wrap;
     }
 
     private boolean i2o(InputStream inputStream, OutputStream outputStream) {
+        if ((inputStream instanceof FileInputStream || inputStream instanceof ByteBufferInputStream)
+                && outputStream instanceof FileOutputStream) {
+            return transfer(inputStream, (FileOutputStream) outputStream);
+        }
         long readTotal = 0;
+        int size = firstBufferSize((int) bufferType.toBytes(bufferSize));
+        byte[] buf = BufferPool.getDefault().getBytes(size);
         try {
-            byte[] buf = new byte[(int) bufferType.toBytes(bufferSize)];
+            skip(inputStream);
+            readTotal = rangeOffset;
             int len;
-            while (-1 != (len = inputStream.read(buf))) {
+            int want;
+            while ((want = (int) Math.min(size, rangeRemaining(readTotal))) > 0
+                    && -1 != (len = inputStream.read(buf, 0, want))) {
+                CancelToken.throwIfCancelled(cancelToken);
                 outputStream.write(buf, 0, len);
                 readTotal += len;
                 performProgress(len, readTotal, BufferType.Byte);
+                if (len == size && (size = nextBufferSize(size)) > buf.length) {
+                    BufferPool.getDefault().put(buf);
+                    buf = BufferPool.getDefault().getBytes(size);
+                }
             }
         } catch (Throwable e) {
             performError(e, readTotal, BufferType.Byte);
             return false;
         } finally {
-            if (closeOut) {
-                IOUtils.close(outputStream);
+            BufferPool.getDefault().put(buf);
+            closeOutput(outputStream);
+            if (closeIn) {
+                IOUtils.close(inputStream);
+            }
+        }
+        return performComplete(readTotal, BufferType.Byte);
+    }
+
+    /**
+     * file to file by {@link FileChannel#transferTo}, or mapped buffer to file by
+     * {@link FileChannel#write}, the data need not be copied into java heap
+     */
+    private boolean transfer(InputStream inputStream, FileOutputStream outputStream) {
+        long readTotal = 0;
+        try {
+            skip(inputStream);
+            readTotal = rangeOffset;
+            FileChannel dst = outputStream.getChannel();
+            final long chunk = Math.max(bufferType.toBytes(bufferSize), MIN_TRANSFER_CHUNK);
+            if (inputStream instanceof FileInputStream) {
+                FileChannel src = ((FileInputStream) inputStream).getChannel();
+                long position = src.position();
+                final long end = position + Math.min(src.size() - position, rangeRemaining(readTotal));
+                while (position < end) {
+                    CancelToken.throwIfCancelled(cancelToken);
+                    long len = src.transferTo(position, Math.min(chunk, end - position), dst);
+                    if (len <= 0) {
+                        // 源文件被截断
+                        break;
+                    }
+                    position += len;
+                    // transferTo不改变源的位置
+                    src.position(position);
+                    readTotal += len;
+                    performProgress(len, readTotal, BufferType.Byte);
+                }
+            } else {
+                ByteBuffer src = ((ByteBufferInputStream) inputStream).buffer();
+                ByteBuffer part = src.duplicate();
+                int len;
+                while ((len = (int) Math.min(Math.min(chunk, src.remaining()), rangeRemaining(readTotal))) > 0) {
+                    CancelToken.throwIfCancelled(cancelToken);
+                    part.limit(src.position() + len).position(src.position());
+                    while (part.hasRemaining()) {
+                        dst.write(part);
+                    }
+                    src.position(src.position() + len);
+                    readTotal += len;
+                    performProgress(len, readTotal, BufferType.Byte);
+                }
             }
+        } catch (Throwable e) {
+            performError(e, readTotal, BufferType.Byte);
+            return false;
+        } finally {
+            closeOutput(outputStream);
             if (closeIn) {
                 IOUtils.close(inputStream);
             }
         }
-        performComplete(readTotal, BufferType.Byte);
-        return true;
+        return performComplete(readTotal, BufferType.Byte);
+    }
+
+    /**
+     * byte copy with a channel or a buffer on at least one side, streams on the other
+     * side are adapted to channels:
+     * a buffer source is written to the output directly; a {@link FileChannel} source
+     * is copied by {@link FileChannel#transferTo}; other sources are read into the buffer
+     * output directly, or into a pooled direct buffer and written to the output
+     */
+    private boolean c2c(Object fromObj, Object toObj) {
+        long readTotal = 0;
+        ByteBuffer buf = null;
+        try {
+            ByteBuffer srcBuffer = fromObj instanceof ByteBufferInputStream
+                    ? ((ByteBufferInputStream) fromObj).buffer()
+                    : fromObj instanceof ByteBuffer ? ((ByteBuffer) fromObj).duplicate() : null;
+            ReadableByteChannel src = null == srcBuffer ? asReadable(fromObj) : null;
+            ByteBuffer dstBuffer = toObj instanceof ByteBuffer ? (ByteBuffer) toObj : null;
+            WritableByteChannel dst = null == dstBuffer ? asWritable(toObj) : null;
+            final long chunk = Math.max(bufferType.toBytes(bufferSize), MIN_TRANSFER_CHUNK);
+            int size = firstBufferSize((int) bufferType.toBytes(bufferSize));
+            if (null != srcBuffer) {
+                skip(srcBuffer);
+                readTotal = rangeOffset;
+                ByteBuffer part = srcBuffer.duplicate();
+                int len;
+                while ((len = (int) Math.min(Math.min(chunk, srcBuffer.remaining()), rangeRemaining(readTotal))) > 0) {
+                    CancelToken.throwIfCancelled(cancelToken);
+                    part.limit(srcBuffer.position() + len).position(srcBuffer.position());
+                    write(part, dst, dstBuffer);
+                    srcBuffer.position(srcBuffer.position() + len);
+                    readTotal += len;
+                    performProgress(len, readTotal, BufferType.Byte);
+                }
+            } else if (src instanceof FileChannel && null != dst) {
+                FileChannel fileSrc = (FileChannel) src;
+                skip(fileSrc, null);
+                readTotal = rangeOffset;
+                long position = fileSrc.position();
+                final long end = position + Math.min(fileSrc.size() - position, rangeRemaining(readTotal));
+                while (position < end) {
+                    CancelToken.throwIfCancelled(cancelToken);
+                    long len = fileSrc.transferTo(position, Math.min(chunk, end - position), dst);
+                    if (len <= 0) {
+                        // 源文件被截断，或目标无法写入更多
+                        break;
+                    }
+                    position += len;
+                    fileSrc.position(position);
+                    readTotal += len;
+                    performProgress(len, readTotal, BufferType.Byte);
+                }
+            } else if (null != dstBuffer) {
+                skip(src, buf = BufferPool.getDefault().getDirect(size));
+                readTotal = rangeOffset;
+                // 直接读入目标buffer，不经过中间buffer
+                ByteBuffer part = dstBuffer.duplicate();
+                int len;
+                int want;
+                while ((want = (int) Math.min(dstBuffer.remaining(), rangeRemaining(readTotal))) > 0) {
+                    part.limit(dstBuffer.position() + want).position(dstBuffer.position());
+                    if (-1 == (len = src.read(part))) {
+                        break;
+                    }
+                    CancelToken.throwIfCancelled(cancelToken);
+                    dstBuffer.position(dstBuffer.position() + len);
+                    readTotal += len;
+                    performProgress(len, readTotal, BufferType.Byte);
+                }
+                if (!dstBuffer.hasRemaining() && rangeRemaining(readTotal) > 0) {
+                    buf.clear().limit(1);
+                    if (-1 != src.read(buf)) {
+                        throw new BufferOverflowException();
+                    }
+                }
+            } else {
+                skip(src, buf = BufferPool.getDefault().getDirect(size));
+                readTotal = rangeOffset;
+                int len;
+                int want;
+                while ((want = (int) Math.min(size, rangeRemaining(readTotal))) > 0) {
+                    buf.clear().limit(want);
+                    if (-1 == (len = src.read(buf))) {
+                        break;
+                    }
+                    CancelToken.throwIfCancelled(cancelToken);
+                    buf.flip();
+                    write(buf, dst, null);
+                    readTotal += len;
+                    performProgress(len, readTotal, BufferType.Byte);
+                    if (len == size && (size = nextBufferSize(size)) > buf.capacity()) {
+                        BufferPool.getDefault().put(buf);
+                        buf = BufferPool.getDefault().getDirect(size);
+                    }
+                }
+            }
+        } catch (Throwable e) {
+            performError(e, readTotal, BufferType.Byte);
+            return false;
+        } finally {
+            BufferPool.getDefault().put(buf);
+            if (toObj instanceof Closeable) {
+                closeOutput((Closeable) toObj);
+            }
+            if (closeIn && fromObj instanceof Closeable) {
+                IOUtils.close((Closeable) fromObj);
+            }
+        }
+        return performComplete(readTotal, BufferType.Byte);
+    }
+
+    private static boolean isByteType(int type) {
+        return type == IOOpBase.B_STREAM || type == IOOpBase.CHANNEL || type == IOOpBase.BUFFER;
+    }
+
+    private static ReadableByteChannel asReadable(Object obj) {
+        if (obj instanceof FileInputStream) {
+            return ((FileInputStream) obj).getChannel();
+        }
+        if (obj instanceof InputStream) {
+            return Channels.newChannel((InputStream) obj);
+        }
+        return (ReadableByteChannel) obj;
+    }
+
+    private static WritableByteChannel asWritable(Object obj) {
+        if (obj instanceof FileOutputStream) {
+            return ((FileOutputStream) obj).getChannel();
+        }
+        if (obj instanceof OutputStream) {
+            return Channels.newChannel((OutputStream) obj);
+        }
+        return (WritableByteChannel) obj;
+    }
+
+    private static InputStream asInputStream(Object obj) {
+        if (obj instanceof ByteBuffer) {
+            return new ByteBufferInputStream((ByteBuffer) obj);
+        }
+        return Channels.newInputStream((ReadableByteChannel) obj);
+    }
+
+    private static OutputStream asOutputStream(Object obj) {
+        if (obj instanceof ByteBuffer) {
+            return new ByteBufferOutputStream((ByteBuffer) obj);
+        }
+        return Channels.newOutputStream((WritableByteChannel) obj);
+    }
+
+    /**
+     * write all remaining of {@code data} to the channel, or put into the buffer if not null
+     */
+    private static void write(ByteBuffer data, WritableByteChannel dst, ByteBuffer dstBuffer) throws IOException {
+        if (null != dstBuffer) {
+            dstBuffer.put(data);
+            return;
+        }
+        while (data.hasRemaining()) {
+            dst.write(data);
+        }
+    }
+
+    /**
+     * the data written flows through stages in the order they are added
+     */
+    private OutputStream applyStages(OutputStream base) throws IOException {
+        // 结束stage时，不关闭原始输出，由closeOutput按closeOut处理
+        OutputStream out = new NonClosingOutputStream(base);
+        for (int i = stages.size() - 1; i >= 0; i--) {
+            out = stages.get(i).wrap(out);
+        }
+        stageBase = base;
+        stagedOut = out;
+        return out;
+    }
+
+    /**
+     * finish stages if any; then if {@link #closeOut}, close the output by {@link #durability},
+     * otherwise only flush it;
+     * if the output is a writer wrapping {@link #fileOut}, flush it, then apply the policy to
+     * {@link #fileOut}.
+     *
+     * <p></p>
+     *
+     * the first failure is kept in {@link #closeError}, and fails the op in {@link #performComplete}
+     */
+    private void closeOutput(Closeable out) {
+        if (null != stagedOut) {
+            // 关闭最外层，结束各个stage，如写入gzip尾部
+            try {
+                out.close();
+            } catch (Throwable e) {
+                onCloseError(e);
+            }
+            stagedOut = null;
+            out = stageBase;
+        }
+        if (!closeOut) {
+            // 不关闭时，也写出缓冲中的数据，如已编码的字节
+            if (out instanceof Flushable) {
+                try {
+                    ((Flushable) out).flush();
+                } catch (Throwable e) {
+                    onCloseError(e);
+                }
+            }
+            return;
+        }
+        try {
+            if (out instanceof Flushable) {
+                ((Flushable) out).flush();
+            }
+            if (out instanceof FileChannel && durability != Durability.NONE) {
+                ((FileChannel) out).force(true);
+            } else if (null != fileOut && durability != Durability.NONE) {
+                if (durability == Durability.GROUP_COMMIT) {
+                    // 与其他文件一起同步并关闭，等待同步完成，失败时op失败；
+                    // 原子模式下，重命名前也已同步
+                    GroupCommit.commit(fileOut, targetFile);
+                    return;
+                }
+                fileOut.getFD().sync();
+            }
+            out.close();
+        } catch (Throwable e) {
+            onCloseError(e);
+            IOUtils.close(out, Durability.NONE);
+        }
+    }
+
+    private void onCloseError(Throwable e) {
+        if (null == closeError) {
+            closeError = e;
+        }
+    }
+
+    /**
+     * skip {@link #rangeOffset} bytes of the source
+     */
+    private void skip(InputStream in) throws IOException {
+        if (rangeOffset <= 0) {
+            return;
+        }
+        if (in instanceof FileInputStream) {
+            skip(((FileInputStream) in).getChannel(), null);
+            return;
+        }
+        long remaining = rangeOffset;
+        while (remaining > 0) {
+            long n = in.skip(remaining);
+            if (n <= 0) {
+                if (-1 == in.read()) {
+                    throw new EOFException("offset " + rangeOffset + " is beyond the source");
+                }
+                n = 1;
+            }
+            remaining -= n;
+        }
+    }
+
+    /**
+     * skip {@link #rangeOffset} bytes of the buffer
+     */
+    private void skip(ByteBuffer src) throws IOException {
+        if (rangeOffset > src.remaining()) {
+            throw new EOFException("offset " + rangeOffset + " is beyond the source");
+        }
+        src.position(src.position() + (int) rangeOffset);
+    }
+
+    /**
+     * skip {@link #rangeOffset} bytes of the channel
+     *
+     * @param scratch buffer to read the skipped bytes into, not needed for {@link FileChannel}
+     */
+    private void skip(ReadableByteChannel src, ByteBuffer scratch) throws IOException {
+        if (rangeOffset <= 0) {
+            return;
+        }
+        if (src instanceof FileChannel) {
+            FileChannel channel = (FileChannel) src;
+            long position = channel.position() + rangeOffset;
+            if (position > channel.size()) {
+                throw new EOFException("offset " + rangeOffset + " is beyond the source");
+            }
+            channel.position(position);
+            return;
+        }
+        long remaining = rangeOffset;
+        while (remaining > 0) {
+            scratch.clear().limit((int) Math.min(scratch.capacity(), remaining));
+            int n = src.read(scratch);
+            if (n < 0) {
+                throw new EOFException("offset " + rangeOffset + " is beyond the source");
+            }
+            remaining -= n;
+        }
+    }
+
+    /**
+     * skip {@link #rangeOffset} chars of the source
+     */
+    private void skip(Reader reader) throws IOException {
+        long remaining = rangeOffset;
+        while (remaining > 0) {
+            long n = reader.skip(remaining);
+            if (n <= 0) {
+                if (-1 == reader.read()) {
+                    throw new EOFException("offset " + rangeOffset + " is beyond the source");
+                }
+                n = 1;
+            }
+            remaining -= n;
+        }
+    }
+
+    /**
+     * @param readTotal offset-inclusive
+     * @return count left to read in the range
+     */
+    private long rangeRemaining(long readTotal) {
+        return rangeLength < 0 ? Long.MAX_VALUE : rangeOffset + rangeLength - readTotal;
+    }
+
+    /**
+     * @return count to copy within the range, -1 if unknown
+     */
+    private long copyLength() {
+        if (sourceLength < 0) {
+            return rangeLength;
+        }
+        long length = Math.max(0, sourceLength - rangeOffset);
+        return rangeLength < 0 ? length : Math.min(length, rangeLength);
+    }
+
+    /**
+     * @param fixed size set by {@link IOOpBase#bufferSize(int)}
+     * @return size of the first buffer, in bytes or chars
+     */
+    private int firstBufferSize(int fixed) {
+        if (!adaptiveBufferSize) {
+            return fixed;
+        }
+        final long length = copyLength();
+        long size = length >= 0
+                // 长度已知，尽量一次读完
+                ? Math.max(MIN_ADAPTIVE_SIZE, Math.min(MAX_ADAPTIVE_SIZE, length))
+                : fixed;
+        return (int) roundToBlock(size);
+    }
+
+    /**
+     * @param size size of last buffer, filled by the last read
+     * @return size of next buffer; grows only if the length of the source is unknown
+     */
+    private int nextBufferSize(int size) {
+        if (!adaptiveBufferSize || copyLength() >= 0 || size >= MAX_ADAPTIVE_SIZE) {
+            return size;
+        }
+        return (int) roundToBlock(Math.min(MAX_ADAPTIVE_SIZE, size * 2L));
+    }
+
+    private long roundToBlock(long size) {
+        if (blockSize <= 0 || size <= blockSize) {
+            return size;
+        }
+        return (size + blockSize - 1) / blockSize * blockSize;
     }
 
     private void performProgress(long readThisTime, long readTotal, BufferType type) {
-        if (null != cb) {
-            cb.onProgress(readThisTime, readTotal, type);
+        if (null == cb) {
+            return;
+        }
+        pendingProgress += readThisTime;
+        if (shouldReportProgress(readTotal)) {
+            reportProgress(readTotal, type);
+        }
+    }
+
+    private boolean shouldReportProgress(long readTotal) {
+        if (progressBytes <= 0 && progressMillis <= 0 && progressPercent <= 0) {
+            return true;
+        }
+        if (progressBytes > 0 && readTotal - lastProgressTotal >= progressBytes) {
+            return true;
+        }
+        if (progressPercent > 0) {
+            // 百分比相对于range内要复制的长度；lastProgressTotal从rangeOffset开始，差值从0计
+            final long length = copyLength();
+            if (length > 0 && (readTotal - lastProgressTotal) * 100 >= length * progressPercent) {
+                return true;
+            }
+        }
+        return progressMillis > 0 && SystemClock.elapsedRealtime() - lastProgressTime >= progressMillis;
+    }
+
+    private void reportProgress(long readTotal, BufferType type) {
+        long readThisTime = pendingProgress;
+        pendingProgress = 0;
+        lastProgressTotal = readTotal;
+        if (progressMillis > 0) {
+            lastProgressTime = SystemClock.elapsedRealtime();
+        }
+        cb.onProgress(readThisTime, readTotal, type);
+    }
+
+    // 结束前，回调尚未回调的进度
+    private void flushProgress(long readTotal, BufferType type) {
+        if (null != cb && pendingProgress > 0) {
+            reportProgress(readTotal, type);
         }
     }
 
     private void performError(Throwable e, long readTotal, BufferType type) {
+        discardTempFile();
         if (null != cb) {
+            flushProgress(readTotal, type);
             cb.onFailed(e, readTotal, type);
         }
     }
 
-    private void performComplete(long readTotal, BufferType type) {
+    private boolean performComplete(long readTotal, BufferType type) {
+        if (null != closeError) {
+            // 输出未完整写入，不能提交临时文件
+            performError(closeError, readTotal, type);
+            return false;
+        }
+        if (!commitTempFile()) {
+            performError(new IOException("cannot rename " + tempFile + " to " + targetFile), readTotal, type);
+            return false;
+        }
         if (null != cb) {
+            flushProgress(readTotal, type);
             cb.onComplete(readTotal, type);
         }
+        return true;
+    }
+
+    /**
+     * @return true if success, or not in atomic mode
+     */
+    private boolean commitTempFile() {
+        if (null == tempFile) {
+            return true;
+        }
+        File temp = tempFile;
+        tempFile = null;
+        if (temp.renameTo(targetFile)) {
+            return true;
+        }
+        tempFile = temp;
+        return false;
+    }
+
+    private void discardTempFile() {
+        if (null != tempFile) {
+            tempFile.delete();
+            tempFile = null;
+        }
+    }
+
+    private static class NonClosingOutputStream extends FilterOutputStream {
+        NonClosingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(@NonNull byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.flush();
+        }
     }
 }
@@ -0,0 +1,27 @@
+package androidrubick.android.io.op;
+
+import android.support.annotation.NonNull;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * a transform stage of the byte output, which runs inside the copy loop of
+ * {@link IOOp}, such as compression, digest and cipher, see {@link IOStages}
+ *
+ * <p></p>
+ * Created by Yin Yong on 2018/1/22.
+ *
+ * @since 1.0.0
+ */
+public interface IOStage {
+
+    /**
+     * @param out the next stage, or the output; the stage should close it when closed,
+     *            so that all stages are finished by closing the outermost one
+     * @return stream which transforms the data written, and writes the result to {@code out}
+     * @since 1.0.0
+     */
+    @NonNull
+    OutputStream wrap(@NonNull OutputStream out) throws IOException;
+}
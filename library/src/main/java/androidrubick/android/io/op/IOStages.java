@@ -0,0 +1,161 @@
+package androidrubick.android.io.op;
+
+import android.support.annotation.NonNull;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CheckedOutputStream;
+import java.util.zip.Checksum;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.InflaterOutputStream;
+
+import javax.crypto.Cipher;
+import javax.crypto.CipherOutputStream;
+
+/**
+ * common {@link IOStage}s;
+ *
+ * to read compressed data, wrap the source, such as
+ * {@code IOOp.from(new GZIPInputStream(ins))}
+ *
+ * <p></p>
+ * Created by Yin Yong on 2018/1/22.
+ *
+ * @since 1.0.0
+ */
+public class IOStages {
+
+    private IOStages() {
+    }
+
+    /**
+     * compress data to gzip format
+     *
+     * @since 1.0.0
+     */
+    @NonNull
+    public static IOStage gzip() {
+        return new IOStage() {
+            @NonNull
+            @Override
+            public OutputStream wrap(@NonNull OutputStream out) throws IOException {
+                return new GZIPOutputStream(out);
+            }
+        };
+    }
+
+    /**
+     * compress data to zlib format
+     *
+     * @since 1.0.0
+     */
+    @NonNull
+    public static IOStage deflate() {
+        return new IOStage() {
+            @NonNull
+            @Override
+            public OutputStream wrap(@NonNull OutputStream out) {
+                return new DeflaterOutputStream(out);
+            }
+        };
+    }
+
+    /**
+     * decompress data of zlib format
+     *
+     * @since 1.0.0
+     */
+    @NonNull
+    public static IOStage inflate() {
+        return new IOStage() {
+            @NonNull
+            @Override
+            public OutputStream wrap(@NonNull OutputStream out) {
+                return new InflaterOutputStream(out);
+            }
+        };
+    }
+
+    /**
+     * update the digest with data passing through, call {@link MessageDigest#digest()}
+     * after the op completes
+     *
+     * @since 1.0.0
+     */
+    @NonNull
+    public static IOStage digest(@NonNull final MessageDigest digest) {
+        return new IOStage() {
+            @NonNull
+            @Override
+            public OutputStream wrap(@NonNull OutputStream out) {
+                return new DigestOutputStream(out, digest);
+            }
+        };
+    }
+
+    /**
+     * update the checksum, such as {@link java.util.zip.CRC32}, with data passing through
+     *
+     * @since 1.0.0
+     */
+    @NonNull
+    public static IOStage checksum(@NonNull final Checksum checksum) {
+        return new IOStage() {
+            @NonNull
+            @Override
+            public OutputStream wrap(@NonNull OutputStream out) {
+                return new CheckedOutputStream(out, checksum);
+            }
+        };
+    }
+
+    /**
+     * encrypt or decrypt data by an initialized cipher
+     *
+     * @since 1.0.0
+     */
+    @NonNull
+    public static IOStage cipher(@NonNull final Cipher cipher) {
+        return new IOStage() {
+            @NonNull
+            @Override
+            public OutputStream wrap(@NonNull OutputStream out) {
+                return new CipherOutputStream(out, cipher);
+            }
+        };
+    }
+
+    /**
+     * add count of bytes passing through to {@code counter}, such as the size after
+     * compression, when placed after a compression stage
+     *
+     * @since 1.0.0
+     */
+    @NonNull
+    public static IOStage counting(@NonNull final AtomicLong counter) {
+        return new IOStage() {
+            @NonNull
+            @Override
+            public OutputStream wrap(@NonNull OutputStream out) {
+                return new FilterOutputStream(out) {
+                    @Override
+                    public void write(int b) throws IOException {
+                        out.write(b);
+                        counter.incrementAndGet();
+                    }
+
+                    @Override
+                    public void write(@NonNull byte[] b, int off, int len) throws IOException {
+                        out.write(b, off, len);
+                        counter.addAndGet(len);
+                    }
+                };
+            }
+        };
+    }
+}